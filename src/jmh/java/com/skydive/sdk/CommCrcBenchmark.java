@@ -0,0 +1,84 @@
+package com.skydive.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares table driven CommCrc with bitwise algorithm it replaced, for size of single
+ * message payload and of large SignalPayloadData (e.g. route).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommCrcBenchmark {
+
+    @Param({"64", "102400"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+    }
+
+    @Benchmark
+    public short crc16Bitwise() {
+        return bitwiseCrc16(data, data.length);
+    }
+
+    @Benchmark
+    public short crc16Table() {
+        return CommCrc.computeCrc16(data, 0, data.length);
+    }
+
+    @Benchmark
+    public int crc32Bitwise() {
+        return bitwiseCrc32(data, data.length);
+    }
+
+    @Benchmark
+    public int crc32Slicing() {
+        return CommCrc.computeCrc32(data, 0, data.length);
+    }
+
+    // previous implementation of CommMessage.computeCrc16
+    static short bitwiseCrc16(byte[] data, int dataSize) {
+        int crcShort = 0;
+        for (int i = 0; i < dataSize; ++i) {
+            byte b = data[i];
+            crcShort = ((crcShort >>> 8) | (crcShort << 8)) & 0xffff;
+            crcShort ^= (b & 0xff);
+            crcShort ^= ((crcShort & 0xff) >> 4);
+            crcShort ^= (crcShort << 12) & 0xffff;
+            crcShort ^= ((crcShort & 0xFF) << 5) & 0xffff;
+        }
+        crcShort &= 0xffff;
+        return (short) crcShort;
+    }
+
+    // previous implementation of CommMessage.computeCrc32
+    static int bitwiseCrc32(byte[] data, int dataSize) {
+        int crc = 0;
+        crc = ~crc;
+        for (int i = 0; i < dataSize; ++i) {
+            byte b = data[i];
+            int bb = (b >= 0 ? b : (256 + b));
+            crc ^= bb;
+            for (int k = 0; k < 8; k++) {
+                crc = ((crc & 1) != 0) ? (crc >> 1) ^ 0x82f63b78 : crc >> 1;
+            }
+        }
+        return ~crc;
+    }
+}
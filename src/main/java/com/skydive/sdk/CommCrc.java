@@ -0,0 +1,111 @@
+package com.skydive.sdk;
+
+/**
+ * Table driven implementation of checksums used in the protocol:
+ * - CRC16 computed over every message payload
+ * - CRC32 (0x82f63b78 polynomial) computed over SignalPayloadData, processed with slicing-by-8
+ * Results are bit identical to the bitwise algorithm used by the board. Note that the CRC32 state
+ * is shifted with sign extension, so tables are generated from that step and the most
+ * significant state byte needs its own table (T32_STATE_3) when slicing.
+ * Both checksums can be computed incrementally: updateCrc16/updateCrc32 called with result
+ * of previous part of data gives the same value as single call for whole data.
+ */
+public final class CommCrc {
+
+    public static final short CRC16_INITIAL = 0;
+    public static final int CRC32_INITIAL = 0;
+
+    private static final int CRC32_POLYNOMIAL = 0x82f63b78;
+
+    private static final int[] T16 = new int[256];
+
+    // T32[k][i] - contribution of data byte i placed at k-th position of 8 bytes block
+    private static final int[][] T32 = new int[8][256];
+    // contribution of the most significant byte of CRC32 state to the 8 bytes block
+    private static final int[] T32_STATE_3 = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            T16[i] = crc16Step(i);
+        }
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int k = 7; k >= 0; k--) {
+                crc = crc32Shift8(crc);
+                T32[k][i] = crc;
+            }
+            crc = i << 24;
+            for (int k = 0; k < 8; k++) {
+                crc = crc32Shift8(crc);
+            }
+            T32_STATE_3[i] = crc;
+        }
+    }
+
+    private CommCrc() {
+    }
+
+    public static short computeCrc16(byte[] data, int offset, int dataSize) {
+        return updateCrc16(CRC16_INITIAL, data, offset, dataSize);
+    }
+
+    public static short updateCrc16(short crc, byte b) {
+        final int crcShort = crc & 0xffff;
+        return (short) ((crcShort << 8) ^ T16[((crcShort >>> 8) ^ b) & 0xff]);
+    }
+
+    public static short updateCrc16(short crc, byte[] data, int offset, int dataSize) {
+        int crcShort = crc & 0xffff;
+        final int end = offset + dataSize;
+        for (int i = offset; i < end; i++) {
+            crcShort = ((crcShort << 8) & 0xffff) ^ T16[((crcShort >>> 8) ^ data[i]) & 0xff];
+        }
+        return (short) crcShort;
+    }
+
+    public static int computeCrc32(byte[] data, int offset, int dataSize) {
+        return updateCrc32(CRC32_INITIAL, data, offset, dataSize);
+    }
+
+    public static int updateCrc32(int crc, byte[] data, int offset, int dataSize) {
+        int state = ~crc;
+        int i = offset;
+        final int end = offset + dataSize;
+        for (; i + 8 <= end; i += 8) {
+            // first three data bytes can be merged with the state, fourth one can not
+            // because of sign extension of the most significant state byte
+            final int merged = state ^ ((data[i] & 0xff)
+                    | (data[i + 1] & 0xff) << 8
+                    | (data[i + 2] & 0xff) << 16);
+            state = T32[0][merged & 0xff]
+                    ^ T32[1][(merged >>> 8) & 0xff]
+                    ^ T32[2][(merged >>> 16) & 0xff]
+                    ^ T32_STATE_3[state >>> 24]
+                    ^ T32[3][data[i + 3] & 0xff]
+                    ^ T32[4][data[i + 4] & 0xff]
+                    ^ T32[5][data[i + 5] & 0xff]
+                    ^ T32[6][data[i + 6] & 0xff]
+                    ^ T32[7][data[i + 7] & 0xff];
+        }
+        for (; i < end; i++) {
+            state = (state >> 8) ^ T32[7][(state ^ data[i]) & 0xff];
+        }
+        return ~state;
+    }
+
+    private static int crc16Step(int b) {
+        // single byte of bitwise CRC16 started from zero state
+        int crcShort = b;
+        crcShort ^= ((crcShort & 0xff) >> 4);
+        crcShort ^= (crcShort << 12) & 0xffff;
+        crcShort ^= ((crcShort & 0xFF) << 5) & 0xffff;
+        return crcShort;
+    }
+
+    private static int crc32Shift8(int crc) {
+        for (int k = 0; k < 8; k++) {
+            crc = ((crc & 1) != 0) ? (crc >> 1) ^ CRC32_POLYNOMIAL : crc >> 1;
+        }
+        return crc;
+    }
+}
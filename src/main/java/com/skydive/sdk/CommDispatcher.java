@@ -4,9 +4,15 @@ import com.skydive.sdk.data.*;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
 import com.skydive.sdk.events.SignalPayloadEvent;
+import com.skydive.sdk.events.SignalPayloadIncompleteEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+
 /**
  * Created by nawba on 16.10.2016.
  */
@@ -14,8 +20,15 @@ public class CommDispatcher {
 
     private static Logger logger = LoggerFactory.getLogger(CommDispatcher.class);
 
-    private byte[] preambleBuffer;
-    private byte[] dataBuffer;
+    // signal payload transfer without new packets for this time is abandoned
+    public static final long SIGNAL_DATA_TIMEOUT = 5000000000L; // [ns]
+    // missing packets of incomplete transfer are requested when no packet arrives for this time,
+    // packets after the last received one only when sender seems to be done, see handleSignalDataTimer
+    public static final long SIGNAL_DATA_QUIET_TIME = 500000000L; // [ns]
+    public static final long SIGNAL_DATA_TAIL_TIME = 2000000000L; // [ns]
+
+    private final byte[] preambleBuffer;
+    private final byte[] dataBuffer;
 
     private int preambleBufferCounter;
     private int dataBufferCounter;
@@ -25,6 +38,11 @@ public class CommDispatcher {
 
     private int targetDataBufferCounter;
 
+    // CRC16 is computed as data arrives, crcValue covers first crcDataCounter bytes of dataBuffer
+    private short crcValue;
+    private int crcDataCounter;
+    private int crcTargetCounter;
+
     private int failedReceptionCounter;
     private int successfulReceptionCounter;
 
@@ -33,23 +51,126 @@ public class CommDispatcher {
     private byte[] signalDataBuffer;
     private int signalDataPacketsToReceive;
     private int signalDataPacketsReceived;
+    // packets already received, duplicates are ignored
+    private BitSet signalDataPackets;
+    // reception of this packet with some packets missing triggers retransmission request
+    private int signalDataCheckpoint;
+    private long signalDataTimestamp; // [ns]
+    // last packet reception or missing packets request, start of quiet time
+    private long signalDataQuietStart; // [ns]
+    // other message was received after the last packet
+    private boolean signalDataFollowed;
+    private boolean signalDataTimerArmed;
+    private final Runnable signalDataTimer;
+
+    // when enabled received messages are passed as views over dataBuffer, see setReusableFrames
+    private boolean reusableFrames;
+    private final CommMessage frameView;
+    private final MessageEvent frameEvent;
+
+    private ByteBuffer wrappedData;
 
     private CommDispatcherListener listener;
+    private final CommScheduler scheduler;
 
     public CommDispatcher(CommDispatcherListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * @param scheduler clock of signal payload timeout and timer of missing packets requests,
+     *                  null for system clock, missing packets are then requested only
+     *                  when the last packet of transfer or retransmission round arrives
+     */
+    public CommDispatcher(CommDispatcherListener listener, CommScheduler scheduler) {
         this.listener = listener;
+        this.scheduler = scheduler;
+        this.signalDataTimer = new Runnable() {
+            @Override
+            public void run() {
+                handleSignalDataTimer();
+            }
+        };
+        this.preambleBuffer = new byte[CommMessage.PREAMBLE_SIZE - 1];
+        this.dataBuffer = new byte[CommMessage.MAX_MESSAGE_SIZE];
+        this.frameView = CommMessage.createView(CommMessage.MessageType.EMPTY, dataBuffer);
+        this.frameEvent = new MessageEvent(frameView);
+        this.reusableFrames = false;
         reset();
     }
 
+    /**
+     * Enables zero allocation receive mode. In this mode every received message is handed out
+     * as the same MessageEvent instance with CommMessage that is a view over internal buffer.
+     * Message is valid only during handleCommEvent call, listener that needs to retain it
+     * has to copy it (new CommMessage(message.getType(), message.getPayload())).
+     */
+    public void setReusableFrames(boolean reusableFrames) {
+        this.reusableFrames = reusableFrames;
+    }
+
+    public boolean isReusableFrames() {
+        return reusableFrames;
+    }
+
     public void proceedReceiving(final byte[] data, final int dataSize) {
-        for (int i = 0; i < dataSize; i++) {
-            proceedByte(data[i]);
+        // transports usually read to the same array, wrapper is reused as long as array is the same
+        if (wrappedData == null || wrappedData.array() != data) {
+            wrappedData = ByteBuffer.wrap(data);
+        }
+        wrappedData.clear();
+        wrappedData.limit(dataSize);
+        proceedReceiving(wrappedData);
+    }
+
+    /**
+     * Proceeds all remaining bytes of given buffer, buffer position is moved to its limit.
+     * Chunk is scanned for preambles word at a time and data between them is copied to
+     * the data buffer with bulk gets, so cost of reception depends on number of frames
+     * rather than on number of bytes.
+     */
+    public synchronized void proceedReceiving(final ByteBuffer data) {
+        final int start = data.position();
+        final int end = data.limit();
+        int preambleEnd = -1;
+        while (data.position() < end) {
+            if (preambleEnd < data.position()) {
+                preambleEnd = findPreambleEnd(data, start, data.position(), end);
+            }
+            if (isPreambleActive) {
+                // proceed processing data, up to the next preamble or to the end of message
+                final int run = Math.min(preambleEnd - data.position(),
+                        targetDataBufferCounter - dataBufferCounter);
+                data.get(dataBuffer, dataBufferCounter, run);
+                dataBufferCounter += run;
+                updateCrc();
+                if (dataBufferCounter >= targetDataBufferCounter) {
+                    handleDataBufferFilled();
+                    continue;
+                }
+            } else {
+                // nothing is being received, skip bytes up to the next preamble
+                data.position(preambleEnd);
+            }
+            if (preambleEnd < end) {
+                // new preamble arrived
+                final CommMessage.MessageType newPreamble =
+                        CommMessage.getPreambleTypeByChar(byteAt(data, start, preambleEnd - 1));
+                data.get();
+                if (isPreambleActive) {
+                    logger.info("SkyDive::CommDispatcher::FAIL: new preamble " +
+                            "received when previous reception not ready");
+                    failedReceptionCounter++;
+                }
+                activatePreamble(newPreamble);
+            }
         }
+        updatePreambleBuffer(data, start, end);
     }
 
-    public void reset() {
-        preambleBuffer = new byte[CommMessage.PREAMBLE_SIZE - 1];
-        dataBuffer = new byte[CommMessage.MAX_MESSAGE_SIZE];
+    public synchronized void reset() {
+        Arrays.fill(preambleBuffer, (byte) 0);
+        Arrays.fill(dataBuffer, (byte) 0);
 
         preambleBufferCounter = 0;
         dataBufferCounter = 0;
@@ -59,6 +180,10 @@ public class CommDispatcher {
 
         targetDataBufferCounter = 0;
 
+        crcValue = CommCrc.CRC16_INITIAL;
+        crcDataCounter = 0;
+        crcTargetCounter = 0;
+
         failedReceptionCounter = 0;
         successfulReceptionCounter = 0;
 
@@ -67,92 +192,117 @@ public class CommDispatcher {
         signalDataBuffer = null;
         signalDataPacketsToReceive = 0;
         signalDataPacketsReceived = 0;
+        signalDataPackets = null;
+        signalDataCheckpoint = -1;
     }
 
-    private void proceedByte(final byte b) {
-        // check for new preamble
-        final CommMessage.MessageType newPreamble = updatePreamble(b);
-        if (newPreamble != CommMessage.MessageType.EMPTY) {
-            if (isPreambleActive) {
-                logger.info("SkyDive::CommDispatcher::FAIL: new preamble " +
-                        "received when previous reception not ready");
-                failedReceptionCounter++;
-            }
-            activatePreamble(newPreamble);
+    private void handleDataBufferFilled() {
+        // enough data in data buffer
+        // check signal message condition
+        if (activePreambleType == CommMessage.MessageType.SIGNAL
+                && dataBufferCounter == CommMessage.SIGNAL_CONSTRAINT_SIZE) {
+            // command from signal message just received, update target
+            updateTargetDataSizeWithCommand();
             return;
         }
 
-        if (isPreambleActive) {
-            // proceed processing data
-            dataBuffer[dataBufferCounter] = b;
-            dataBufferCounter++;
-
-            if (dataBufferCounter >= targetDataBufferCounter) {
-                // enough data in data buffer
-                // check signal message condition
-                if (activePreambleType == CommMessage.MessageType.SIGNAL
-                        && dataBufferCounter == CommMessage.SIGNAL_CONSTRAINT_SIZE) {
-                    // command from signal message just received, update target
-                    updateTargetDataSizeWithCommand();
-                    return;
-                }
-
-                // check CRC condition
-                if (isValidMessageCrc()) {
-                    // data received successfully!
-                    successfulReceptionCounter++;
-                    if (activePreambleType == CommMessage.MessageType.SIGNAL &&
-                            SignalData.hasPayload(SignalData.parseCommand(dataBuffer))) {
-                        handleSignalDataPayloadReception();
-                        if (isSignalDataComplete()) {
-                            receivingSignalData = false;
-                            // signal data payload received successfully
-                            listener.handleCommEvent(
-                                    new SignalPayloadEvent(signalPayloadMessageFactory()));
-                        }
-                    } else {
-                        if (receivingSignalData) {
-                            logger.info("SkyDive::CommDispatcher::FAIL: receiving SignalData not ready");
-                            failedReceptionCounter++;
-                        }
-                        receivingSignalData = false;
-                        // preamble message payload received successfully
-                        listener.handleCommEvent(
-                                new MessageEvent(new CommMessage(activePreambleType, dataBuffer)));
-                    }
+        // check CRC condition
+        if (isValidMessageCrc()) {
+            // data received successfully!
+            successfulReceptionCounter++;
+            if (activePreambleType == CommMessage.MessageType.SIGNAL &&
+                    SignalData.hasPayload(SignalData.parseCommand(dataBuffer))) {
+                final boolean checkpoint = handleSignalDataPayloadReception();
+                if (isSignalDataComplete()) {
+                    receivingSignalData = false;
+                    // signal data payload received successfully
+                    listener.handleCommEvent(
+                            new SignalPayloadEvent(signalPayloadMessageFactory()));
+                } else if (checkpoint) {
+                    // sender is done but some packets are missing, ask for them
+                    requestMissingPackets(getMissingPackets());
                 } else {
-                    // something gone wrong, reset processor
-                    logger.info("SkyDive::CommDispatcher::FAIL: wrong CRC");
-                    failedReceptionCounter++;
+                    // the last packet may be lost, missing packets are then requested by timer
+                    armSignalDataTimer(SIGNAL_DATA_QUIET_TIME);
                 }
-                deactivatePreamble();
+            } else {
+                // telemetry and signals interleaved with payload packets do not break its transfer
+                signalDataFollowed = receivingSignalData;
+                // preamble message payload received successfully
+                listener.handleCommEvent(messageEventFactory());
             }
+        } else {
+            // something gone wrong, reset processor
+            logger.info("SkyDive::CommDispatcher::FAIL: wrong CRC");
+            failedReceptionCounter++;
         }
+        deactivatePreamble();
     }
 
-    private CommMessage.MessageType updatePreamble(final byte b) {
-        // new preamble is arrived when all preamble bytes are the same
-        // and equals to known preamble type
-        // and the last received byte is equal to 0
-        CommMessage.MessageType result = CommMessage.MessageType.EMPTY;
-        if (b == 0) {
-            boolean allEquals = true;
-            for (byte by : preambleBuffer) {
-                if (preambleBuffer[0] != by) {
-                    allEquals = false;
-                    break;
+    /**
+     * Returns position of zero byte that ends first preamble found in range [from, end) of data
+     * or end when there is no preamble. New preamble is arrived when three preceding bytes are
+     * the same and equals to known preamble type and the last received byte is equal to 0.
+     * Zero bytes are searched word at a time, each one found is verified against preceding bytes.
+     */
+    private int findPreambleEnd(final ByteBuffer data, final int start, final int from, final int end) {
+        final boolean bigEndian = data.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + 8 <= end; i += 8) {
+            long word = data.getLong(i);
+            if (bigEndian) {
+                // byte with the lowest index has to be the least significant one
+                word = Long.reverseBytes(word);
+            }
+            // flags every zero byte, bytes above a zero may be flagged falsely
+            long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            while (zeros != 0) {
+                final int index = i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+                if (isPreambleEnd(data, start, index)) {
+                    return index;
                 }
+                zeros &= zeros - 1;
             }
-            if (allEquals) {
-                result = CommMessage.getPreambleTypeByChar(preambleBuffer[0]);
+        }
+        for (; i < end; i++) {
+            if (isPreambleEnd(data, start, i)) {
+                return i;
             }
         }
-        preambleBuffer[preambleBufferCounter] = b;
-        preambleBufferCounter++;
-        if (preambleBufferCounter >= CommMessage.PREAMBLE_SIZE - 1) {
-            preambleBufferCounter = 0;
+        return end;
+    }
+
+    private boolean isPreambleEnd(final ByteBuffer data, final int start, final int index) {
+        if (data.get(index) != 0) {
+            return false;
+        }
+        final byte b = byteAt(data, start, index - 1);
+        return b == byteAt(data, start, index - 2)
+                && b == byteAt(data, start, index - 3)
+                && CommMessage.getPreambleTypeByChar(b) != CommMessage.MessageType.EMPTY;
+    }
+
+    private byte byteAt(final ByteBuffer data, final int start, final int index) {
+        if (index >= start) {
+            return data.get(index);
+        }
+        // byte received in previous chunk, latest one is just before preambleBufferCounter
+        int ringIndex = preambleBufferCounter + index - start;
+        if (ringIndex < 0) {
+            ringIndex += preambleBuffer.length;
+        }
+        return preambleBuffer[ringIndex];
+    }
+
+    private void updatePreambleBuffer(final ByteBuffer data, final int start, final int end) {
+        // remember last bytes of chunk, preamble may be split between chunks
+        for (int i = Math.max(start, end - preambleBuffer.length); i < end; i++) {
+            preambleBuffer[preambleBufferCounter] = data.get(i);
+            preambleBufferCounter++;
+            if (preambleBufferCounter >= preambleBuffer.length) {
+                preambleBufferCounter = 0;
+            }
         }
-        return result;
     }
 
     private void activatePreamble(final CommMessage.MessageType preambleType) {
@@ -164,6 +314,10 @@ public class CommDispatcher {
         if (activePreambleType != CommMessage.MessageType.SIGNAL) {
             targetDataBufferCounter += CommMessage.CRC_SIZE;
         }
+
+        crcValue = CommCrc.CRC16_INITIAL;
+        crcDataCounter = 0;
+        crcTargetCounter = CommMessage.getPayloadSizeByType(preambleType);
     }
 
     private void updateTargetDataSizeWithCommand() {
@@ -173,12 +327,20 @@ public class CommDispatcher {
         } else {
             targetDataBufferCounter += CommMessage.CRC_SIZE;
         }
+        crcTargetCounter = targetDataBufferCounter - CommMessage.CRC_SIZE;
+        updateCrc();
+    }
+
+    private void updateCrc() {
+        // include newly received data in CRC, CRC bytes itself are excluded
+        final int limit = Math.min(dataBufferCounter, crcTargetCounter);
+        if (limit > crcDataCounter) {
+            crcValue = CommCrc.updateCrc16(crcValue, dataBuffer, crcDataCounter, limit - crcDataCounter);
+            crcDataCounter = limit;
+        }
     }
 
     private boolean isValidMessageCrc() {
-        byte[] tmpArray = new byte[targetDataBufferCounter - CommMessage.CRC_SIZE];
-        System.arraycopy(dataBuffer, 0, tmpArray, 0, tmpArray.length);
-        final short crcValue = CommMessage.computeCrc16(tmpArray);
         byte crc1 = (byte) (crcValue & 0xff);
         byte crc2 = (byte) ((crcValue >> 8) & 0xff);
         return dataBuffer[targetDataBufferCounter - 2] == crc1
@@ -191,28 +353,110 @@ public class CommDispatcher {
         signalDataPacketsToReceive = allPackets;
         receivingSignalData = true;
         signalDataPacketsReceived = 0;
+        signalDataPackets = new BitSet(allPackets);
+        signalDataCheckpoint = allPackets - 1;
     }
 
-    private void handleSignalDataPayloadReception() {
+    /**
+     * Returns true when received packet is the one after which missing packets should be reported.
+     */
+    private boolean handleSignalDataPayloadReception() {
         final SignalData.Command command = SignalData.parseCommand(dataBuffer);
         final short allPackets = SignalData.parseAllPacketsNumber(dataBuffer);
         final short packetNumber = SignalData.parseActualPacketNumber(dataBuffer);
 
-        if (!receivingSignalData || receivedSignalData != command) {
+        if (allPackets <= 0 || packetNumber < 0 || packetNumber >= allPackets) {
+            logger.info("SkyDive::CommDispatcher::FAIL: wrong SignalData packet number");
+            failedReceptionCounter++;
+            return false;
+        }
+
+        final long now = scheduler != null ? scheduler.nanoTime() : System.nanoTime();
+        if (receivingSignalData && now - signalDataTimestamp > SIGNAL_DATA_TIMEOUT) {
+            logger.info("SkyDive::CommDispatcher::FAIL: SignalData " + receivedSignalData + " timed out");
+            failedReceptionCounter++;
+            receivingSignalData = false;
+        }
+        if (!receivingSignalData || receivedSignalData != command || signalDataPacketsToReceive != allPackets) {
             // new data or another data was being received
             initSignalDataPayloadReception(command, allPackets);
         }
-        // put data to buffer in to reported position
-        System.arraycopy(dataBuffer, CommMessage.SIGNAL_CONSTRAINT_SIZE,
-                signalDataBuffer, packetNumber * CommMessage.SIGNAL_DATA_PAYLOAD_SIZE,
-                CommMessage.SIGNAL_DATA_PAYLOAD_SIZE);
-        signalDataPacketsReceived++;
+        signalDataTimestamp = now;
+        signalDataQuietStart = now;
+        signalDataFollowed = false;
+        if (!signalDataPackets.get(packetNumber)) {
+            // put data to buffer in to reported position
+            System.arraycopy(dataBuffer, CommMessage.SIGNAL_CONSTRAINT_SIZE,
+                    signalDataBuffer, packetNumber * CommMessage.SIGNAL_DATA_PAYLOAD_SIZE,
+                    CommMessage.SIGNAL_DATA_PAYLOAD_SIZE);
+            signalDataPackets.set(packetNumber);
+            signalDataPacketsReceived++;
+        }
+        return packetNumber == signalDataCheckpoint;
+    }
+
+    private void requestMissingPackets(final BitSet missingPackets) {
+        signalDataCheckpoint = missingPackets.length() - 1;
+        logger.info("SkyDive::CommDispatcher::FAIL: SignalData incomplete, missing packets: "
+                + missingPackets.cardinality());
+        listener.handleCommEvent(
+                new SignalPayloadIncompleteEvent(receivedSignalData, missingPackets));
+    }
+
+    private void armSignalDataTimer(long delay) {
+        if (scheduler != null && !signalDataTimerArmed) {
+            signalDataTimerArmed = true;
+            scheduler.schedule(signalDataTimer, delay, 0);
+        }
+    }
+
+    /**
+     * Requests missing packets when transfer is quiet, so lost checkpoint packet does not stall
+     * the transfer until timeout. Packets after the last received one may be still on the way
+     * on slow link, so they are requested only when other message arrived after the last packet
+     * or transfer is quiet for SIGNAL_DATA_TAIL_TIME.
+     */
+    private synchronized void handleSignalDataTimer() {
+        signalDataTimerArmed = false;
+        if (!receivingSignalData) {
+            return;
+        }
+        final long now = scheduler.nanoTime();
+        if (now - signalDataTimestamp > SIGNAL_DATA_TIMEOUT) {
+            // sender is gone, transfer is abandoned by the next packet
+            return;
+        }
+        final long quiet = now - signalDataQuietStart;
+        if (quiet < SIGNAL_DATA_QUIET_TIME) {
+            armSignalDataTimer(SIGNAL_DATA_QUIET_TIME - quiet);
+            return;
+        }
+        final boolean senderDone = signalDataFollowed || quiet >= SIGNAL_DATA_TAIL_TIME;
+        final BitSet missingPackets = getMissingPackets();
+        if (!senderDone) {
+            missingPackets.clear(signalDataPackets.length(), signalDataPacketsToReceive);
+        }
+        if (!missingPackets.isEmpty()) {
+            requestMissingPackets(missingPackets);
+            signalDataQuietStart = now;
+            signalDataFollowed = false;
+            armSignalDataTimer(SIGNAL_DATA_QUIET_TIME);
+        } else {
+            armSignalDataTimer(Math.min(SIGNAL_DATA_QUIET_TIME, SIGNAL_DATA_TAIL_TIME - quiet));
+        }
     }
 
     private boolean isSignalDataComplete() {
         return signalDataPacketsToReceive == signalDataPacketsReceived;
     }
 
+    private BitSet getMissingPackets() {
+        final BitSet result = new BitSet(signalDataPacketsToReceive);
+        result.set(0, signalDataPacketsToReceive);
+        result.andNot(signalDataPackets);
+        return result;
+    }
+
     private SignalPayloadData signalPayloadMessageFactory() {
         if (receivedSignalData == SignalData.Command.CALIBRATION_SETTINGS_DATA) {
             return new CalibrationSettings(signalDataBuffer);
@@ -226,6 +470,15 @@ public class CommDispatcher {
         }
     }
 
+    private MessageEvent messageEventFactory() {
+        if (reusableFrames) {
+            frameView.wrap(activePreambleType);
+            return frameEvent;
+        } else {
+            return new MessageEvent(new CommMessage(activePreambleType, dataBuffer));
+        }
+    }
+
     private void deactivatePreamble() {
         isPreambleActive = false;
         activePreambleType = CommMessage.MessageType.EMPTY;
@@ -6,18 +6,20 @@ import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.data.SignalPayloadData;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
+import com.skydive.sdk.events.SignalPayloadIncompleteEvent;
 import com.skydive.sdk.events.UserEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Created by NawBar on 2016-10-12.
  */
-public class CommHandler implements CommInterface.CommInterfaceListener,
+public class CommHandler implements CommInterface.ByteBufferListener,
         CommDispatcher.CommDispatcherListener {
 
     private static Logger logger = LoggerFactory.getLogger(CommHandler.class);
@@ -33,15 +35,24 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
     private CommTask controlTask;
     private CommTask pingTask;
 
+    private CommOutboundQueue outboundQueue;
+
+    private final CommScheduler scheduler;
+
     public CommHandler(UavManager uavManager, double controlFreq, double pingFreq) {
+        this(uavManager, controlFreq, pingFreq, CommScheduler.getDefault());
+    }
+
+    public CommHandler(UavManager uavManager, double controlFreq, double pingFreq, CommScheduler scheduler) {
+        this.scheduler = scheduler;
         this.commHandlerAction = new IdleAction(this);
-        this.dispatcher = new CommDispatcher(this);
+        this.dispatcher = new CommDispatcher(this, scheduler);
 
         this.uavManager = uavManager;
 
         this.runningTasks = new ArrayList<>();
 
-        controlTask = new CommTask(controlFreq) {
+        controlTask = new CommTask(controlFreq, scheduler) {
             @Override
             protected String getTaskName() {
                 return "control_task";
@@ -58,7 +69,7 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
             }
         };
 
-        pingTask = new CommTask(pingFreq) {
+        pingTask = new CommTask(pingFreq, scheduler) {
             @Override
             protected String getTaskName() {
                 return "ping_task";
@@ -69,9 +80,11 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
                 logger.debug("Pinging...");
                 switch (state) {
                     case CONFIRMED:
-                        sentPing = new SignalData(SignalData.Command.PING_VALUE, (int) (Math.random() * 1000000000));
-                        send(sentPing.getMessage());
-                        timestamp = System.currentTimeMillis();
+                        // pong may be handled on receiving thread before send returns
+                        final SignalData ping = new SignalData(SignalData.Command.PING_VALUE, (int) (Math.random() * 1000000000));
+                        timestamp = scheduler.nanoTime();
+                        sentPing = ping;
+                        send(ping.getMessage(), CommOutboundQueue.Priority.PING);
                         break;
 
                     case WAITING:
@@ -87,6 +100,7 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
         logger.info("CommHandler: connect over: " + commInterface.getClass().getSimpleName());
         this.commInterface = commInterface;
         this.commInterface.setListener(this);
+        this.outboundQueue = new CommOutboundQueue(commInterface, scheduler);
         this.commInterface.connect();
     }
 
@@ -132,9 +146,18 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
                     if (signalData.getCommand() == SignalData.Command.PING_VALUE) {
                         uavManager.setCommDelay(handlePongReception(signalData));
                         return;
+                    } else if (signalData.getCommand() == SignalData.Command.PACKETS_RETRANSMISSION) {
+                        handlePacketsRetransmission(signalData);
+                        return;
                     }
                 }
                 break;
+
+            case SIGNAL_PAYLOAD_INCOMPLETE:
+                for (SignalData request : ((SignalPayloadIncompleteEvent) event).getRetransmissionRequests()) {
+                    send(request.getMessage());
+                }
+                return;
         }
 
         try {
@@ -152,16 +175,32 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
         return commHandlerAction.getActionType();
     }
 
+    public CommScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public CommOutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
     public void send(CommMessage message) {
-        logger.debug("Sending message: " + message.toString());
-        byte[] array = message.getByteArray();
-        commInterface.send(array, array.length);
+        send(message, message.getType() == CommMessage.MessageType.CONTROL ?
+                CommOutboundQueue.Priority.CONTROL : CommOutboundQueue.Priority.SIGNAL);
+    }
+
+    public void send(CommMessage message, CommOutboundQueue.Priority priority) {
+        logger.debug("Sending message: {}", message);
+        outboundQueue.send(message, priority);
     }
 
     public void send(final SignalPayloadData data) {
-        for (CommMessage message : data.getMessages()) {
-            send(message);
-        }
+        logger.debug("Sending " + data.getDataType());
+        outboundQueue.sendPayload(data);
+    }
+
+    private void handlePacketsRetransmission(final SignalData request) {
+        logger.info("Retransmitting {} packets starting from {}", request.getPacketsCount(), request.getFirstPacket());
+        outboundQueue.retransmit(request.getFirstPacket(), request.getPacketsCount());
     }
 
     public void notifyActionDone() {
@@ -208,6 +247,11 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
         dispatcher.proceedReceiving(data, dataSize);
     }
 
+    @Override
+    public void onDataReceived(final ByteBuffer data) {
+        dispatcher.proceedReceiving(data);
+    }
+
     @Override
     public void onError(IOException e) {
         logger.info("onError: " + e.getMessage());
@@ -232,16 +276,18 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
         }
     }
 
-    private SignalData sentPing;
-    private long timestamp;
+    // written by ping task on scheduler worker, read on receiving thread
+    private volatile SignalData sentPing;
+    private volatile long timestamp; // [ns]
 
-    private PingTaskState state = PingTaskState.CONFIRMED;
+    private volatile PingTaskState state = PingTaskState.CONFIRMED;
 
     private long handlePongReception(final SignalData pingPongMessage) {
-        if (pingPongMessage.getParameterValue() == sentPing.getParameterValue()) {
+        final SignalData ping = sentPing;
+        if (ping != null && pingPongMessage.getParameterValue() == ping.getParameterValue()) {
             // valid ping measurement, compute ping time
             state = PingTaskState.CONFIRMED;
-            return (System.currentTimeMillis() - timestamp) / 2;
+            return (scheduler.nanoTime() - timestamp) / 2000000;
         } else {
             logger.warn("Pong key does not match to the ping key!");
             return 0;
@@ -274,6 +320,10 @@ public class CommHandler implements CommInterface.CommInterfaceListener,
         }
     }
 
+    /**
+     * Task sending control data in flight loop. Precise mode (see CommTask.setPrecise) can be
+     * enabled for it, when smooth control needs even spacing of control frames.
+     */
     public CommTask getControlTask() {
         return controlTask;
     }
@@ -1,6 +1,7 @@
 package com.skydive.sdk;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Created by Bartosz Nawrot on 2016-11-02.
@@ -10,6 +11,11 @@ public abstract class CommInterface {
 
     protected CommInterfaceListener listener;
 
+    // used for listeners that does not accept ByteBuffer
+    private byte[] receiveArray;
+    // used for gathering send by interfaces that does not override it
+    private byte[] sendArray;
+
     public void setListener(CommInterfaceListener listener) {
         this.listener = listener;
     }
@@ -24,6 +30,44 @@ public abstract class CommInterface {
 
     public abstract void send(final byte[] data, final int dataSize);
 
+    /**
+     * Gathering send of length buffers starting from offset, each buffer holds whole messages.
+     * Buffers are not used after return. Default implementation sends all data with single send call.
+     */
+    public synchronized void send(final ByteBuffer[] buffers, final int offset, final int length) {
+        int dataSize = 0;
+        for (int i = offset; i < offset + length; i++) {
+            dataSize += buffers[i].remaining();
+        }
+        if (sendArray == null || sendArray.length < dataSize) {
+            sendArray = new byte[dataSize];
+        }
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final int remaining = buffers[i].remaining();
+            buffers[i].get(sendArray, position, remaining);
+            position += remaining;
+        }
+        send(sendArray, dataSize);
+    }
+
+    /**
+     * Passes received data to listener, without copying when listener accepts ByteBuffer.
+     * Remaining bytes of data are consumed.
+     */
+    protected void notifyDataReceived(final ByteBuffer data) {
+        if (listener instanceof ByteBufferListener) {
+            ((ByteBufferListener) listener).onDataReceived(data);
+        } else {
+            final int dataSize = data.remaining();
+            if (receiveArray == null || receiveArray.length < dataSize) {
+                receiveArray = new byte[dataSize];
+            }
+            data.get(receiveArray, 0, dataSize);
+            listener.onDataReceived(receiveArray, dataSize);
+        }
+    }
+
     public interface CommInterfaceListener {
         void onConnected();
 
@@ -33,4 +77,11 @@ public abstract class CommInterface {
 
         void onDataReceived(final byte[] data, final int dataSize);
     }
+
+    /**
+     * Listener that consumes received data directly from interface buffer.
+     */
+    public interface ByteBufferListener extends CommInterfaceListener {
+        void onDataReceived(final ByteBuffer data);
+    }
 }
@@ -33,6 +33,8 @@ public class CommMessage {
     private MessageType type;
     private byte[] payload;
     private short crc;
+    // view messages compute CRC only on demand, see createView
+    private boolean view;
 
     public CommMessage(MessageType type, byte[] payload) {
         this.type = type;
@@ -41,6 +43,29 @@ public class CommMessage {
         this.crc = computeCrc();
     }
 
+    private CommMessage() {
+    }
+
+    /**
+     * Creates message that is a view over given buffer, content is not copied.
+     * Used by CommDispatcher in reusable frames mode, see CommDispatcher.setReusableFrames.
+     */
+    static CommMessage createView(MessageType type, byte[] buffer) {
+        CommMessage message = new CommMessage();
+        message.payload = buffer;
+        message.view = true;
+        message.wrap(type);
+        return message;
+    }
+
+    /**
+     * Points this view message to new frame, that is already placed in the wrapped buffer.
+     * Frame CRC was already verified during reception so it is not computed here.
+     */
+    void wrap(MessageType type) {
+        this.type = type;
+    }
+
     public MessageType getType() {
         return type;
     }
@@ -57,13 +82,18 @@ public class CommMessage {
         byte[] message = new byte[getMessageSize()];
         System.arraycopy(getPreambleByType(type), 0, message, 0, 4);
         System.arraycopy(payload, 0, message, 4, payload.length);
+        final short crc = getCrc();
         message[getMessageSize() - 2] = (byte) (crc & 0xff);
         message[getMessageSize() - 1] = (byte) ((crc >> 8) & 0xff);
         return message;
     }
 
     public boolean isValid() {
-        return crc == computeCrc();
+        return getCrc() == computeCrc();
+    }
+
+    private short getCrc() {
+        return view ? computeCrc() : crc;
     }
 
     private short computeCrc() {
@@ -163,17 +193,11 @@ public class CommMessage {
     }
 
     static public short computeCrc16(byte[] data, int dataSize) {
-        int crcShort = 0;
-        for (int i = 0; i < dataSize; ++i) {
-            byte b = data[i];
-            crcShort = ((crcShort >>> 8) | (crcShort << 8)) & 0xffff;
-            crcShort ^= (b & 0xff);
-            crcShort ^= ((crcShort & 0xff) >> 4);
-            crcShort ^= (crcShort << 12) & 0xffff;
-            crcShort ^= ((crcShort & 0xFF) << 5) & 0xffff;
-        }
-        crcShort &= 0xffff;
-        return (short) crcShort;
+        return computeCrc16(data, 0, dataSize);
+    }
+
+    static public short computeCrc16(byte[] data, int offset, int dataSize) {
+        return CommCrc.computeCrc16(data, offset, dataSize);
     }
 
     static public int computeCrc32(byte[] data) {
@@ -181,18 +205,11 @@ public class CommMessage {
     }
 
     static public int computeCrc32(byte[] data, int dataSize) {
-        int crc = 0;
-        crc = ~crc;
-        for (int i = 0; i < dataSize; ++i)
-        {
-            byte b = data[i];
-            int bb = (b >= 0 ? b : (256 + b)); // turn 'byte' to 'unsigned char' value
-            crc ^= bb;
-            for (int k = 0; k < 8; k++) {
-                crc = ((crc & 1) != 0) ? (crc >> 1) ^ 0x82f63b78 : crc >> 1;
-            }
-        }
-        return ~crc;
+        return computeCrc32(data, 0, dataSize);
+    }
+
+    static public int computeCrc32(byte[] data, int offset, int dataSize) {
+        return CommCrc.computeCrc32(data, offset, dataSize);
     }
 
     public static String byteToHexString(byte b) {
@@ -213,6 +230,7 @@ public class CommMessage {
 
     @Override
     public String toString() {
+        final short crc = getCrc();
         byte[] crcArray = new byte[2];
         crcArray[1] = (byte) (crc & 0xff);
         crcArray[0] = (byte) ((crc >> 8) & 0xff);
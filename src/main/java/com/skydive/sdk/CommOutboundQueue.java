@@ -0,0 +1,261 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.SignalData;
+import com.skydive.sdk.data.SignalPayloadData;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Outbound queue of single link, all messages sent by CommHandler go through it.
+ * Messages are queued in priority classes and written to CommInterface by single writer,
+ * so frames from concurrent senders never interleave and waiting control frames are always
+ * written first. There is no writer thread: sender that finds queue idle becomes the writer
+ * and drains the queue, including messages queued meanwhile by other threads.
+ * SignalPayloadData is encoded by the writer and written in chunks of PAYLOAD_CHUNK packets,
+ * so long transfer can be preempted by messages of higher priority.
+ * Wait times are measured by clock of scheduler, so they are in virtual time with VirtualScheduler.
+ */
+public class CommOutboundQueue {
+
+    public enum Priority {
+        CONTROL,
+        SIGNAL,
+        PING,
+        PAYLOAD,
+    }
+
+    public static final int PAYLOAD_CHUNK = 64;
+
+    private final CommInterface commInterface;
+    private final CommScheduler scheduler;
+
+    // packets of last sent SignalPayloadData, accessed only by the writer
+    private final CommPacketizer packetizer = new CommPacketizer();
+
+    // guarded by this
+    private final ArrayDeque<Entry>[] queues;
+    private boolean writing;
+
+    private final Metrics[] metrics;
+    private long payloadsCount;
+    private long retransmittedPacketsCount;
+
+    public CommOutboundQueue(CommInterface commInterface, CommScheduler scheduler) {
+        this.commInterface = commInterface;
+        this.scheduler = scheduler;
+        final int prioritiesCount = Priority.values().length;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final ArrayDeque<Entry>[] queues = (ArrayDeque<Entry>[]) new ArrayDeque[prioritiesCount];
+        this.queues = queues;
+        this.metrics = new Metrics[prioritiesCount];
+        for (int i = 0; i < prioritiesCount; i++) {
+            queues[i] = new ArrayDeque<>();
+            metrics[i] = new Metrics();
+        }
+    }
+
+    public void send(CommMessage message, Priority priority) {
+        final byte[] array = message.getByteArray();
+        enqueue(priority, new Entry(array));
+        drain();
+    }
+
+    /**
+     * Sends all packets of data, packets are kept for retransmission until next payload is sent.
+     */
+    public void sendPayload(SignalPayloadData data) {
+        enqueue(Priority.PAYLOAD, new Entry(data.getDataType(), data.serialize()));
+        drain();
+    }
+
+    /**
+     * Sends again packets of last sent payload, see SignalData.PACKETS_RETRANSMISSION.
+     */
+    public void retransmit(int firstPacket, int packetsCount) {
+        enqueue(Priority.PAYLOAD, new Entry(firstPacket, packetsCount));
+        drain();
+    }
+
+    public int getQueueDepth(Priority priority) {
+        synchronized (this) {
+            return queues[priority.ordinal()].size();
+        }
+    }
+
+    public int getMaxQueueDepth(Priority priority) {
+        synchronized (this) {
+            return metrics[priority.ordinal()].maxDepth;
+        }
+    }
+
+    /**
+     * Average time from queuing to write of messages of given priority [ms].
+     */
+    public double getAverageWaitTime(Priority priority) {
+        synchronized (this) {
+            final Metrics m = metrics[priority.ordinal()];
+            return m.written > 0 ? m.totalWait / 1e6 / m.written : 0.0;
+        }
+    }
+
+    /**
+     * Maximal time from queuing to write of messages of given priority [ms].
+     */
+    public double getMaxWaitTime(Priority priority) {
+        synchronized (this) {
+            return metrics[priority.ordinal()].maxWait / 1e6;
+        }
+    }
+
+    /**
+     * Number of SignalPayloadData sent in full.
+     */
+    public synchronized long getPayloadsCount() {
+        return payloadsCount;
+    }
+
+    /**
+     * Number of packets sent again on retransmission requests.
+     */
+    public synchronized long getRetransmittedPacketsCount() {
+        return retransmittedPacketsCount;
+    }
+
+    public long getWrittenCount(Priority priority) {
+        synchronized (this) {
+            return metrics[priority.ordinal()].written;
+        }
+    }
+
+    private void enqueue(Priority priority, Entry entry) {
+        entry.timestamp = scheduler.nanoTime();
+        synchronized (this) {
+            final ArrayDeque<Entry> queue = queues[priority.ordinal()];
+            queue.add(entry);
+            final Metrics m = metrics[priority.ordinal()];
+            m.maxDepth = Math.max(m.maxDepth, queue.size());
+        }
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (writing) {
+                // actual writer will write the entry
+                return;
+            }
+            writing = true;
+        }
+        try {
+            while (true) {
+                final Entry entry;
+                final int priority;
+                synchronized (this) {
+                    priority = highestPriority();
+                    if (priority < 0) {
+                        writing = false;
+                        return;
+                    }
+                    entry = queues[priority].poll();
+                    if (!entry.started) {
+                        final long wait = scheduler.nanoTime() - entry.timestamp;
+                        final Metrics m = metrics[priority];
+                        m.written++;
+                        m.totalWait += wait;
+                        m.maxWait = Math.max(m.maxWait, wait);
+                    }
+                }
+                if (!write(entry)) {
+                    synchronized (this) {
+                        // not finished payload goes back to the front, after messages of higher priority
+                        queues[priority].addFirst(entry);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                writing = false;
+            }
+            throw e;
+        }
+    }
+
+    private int highestPriority() {
+        for (int i = 0; i < queues.length; i++) {
+            if (!queues[i].isEmpty()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes entry or its next chunk, returns true when entry is finished.
+     */
+    private boolean write(Entry entry) {
+        if (entry.message != null) {
+            commInterface.send(entry.message, entry.message.length);
+            return true;
+        }
+        if (!entry.started) {
+            entry.started = true;
+            final boolean retransmission = entry.payload == null;
+            if (!retransmission) {
+                entry.packetsCount = packetizer.encode(entry.dataType, entry.payload);
+                entry.payload = null;
+            }
+            entry.firstPacket = Math.min(entry.firstPacket, packetizer.getPacketsCount());
+            entry.packetsCount = Math.min(entry.packetsCount, packetizer.getPacketsCount() - entry.firstPacket);
+            synchronized (this) {
+                if (retransmission) {
+                    retransmittedPacketsCount += entry.packetsCount;
+                } else {
+                    payloadsCount++;
+                }
+            }
+        }
+        final int count = Math.min(PAYLOAD_CHUNK, entry.packetsCount);
+        if (count == 0) {
+            return true;
+        }
+        final ByteBuffer[] packets = packetizer.getPackets(entry.firstPacket, count);
+        commInterface.send(packets, entry.firstPacket, count);
+        entry.firstPacket += count;
+        entry.packetsCount -= count;
+        return entry.packetsCount == 0;
+    }
+
+    private static class Entry {
+        private long timestamp;
+        // single message
+        private byte[] message;
+        // payload to encode, or range of last payload packets
+        private SignalData.Command dataType;
+        private byte[] payload;
+        private int firstPacket;
+        private int packetsCount;
+        private boolean started;
+
+        Entry(byte[] message) {
+            this.message = message;
+        }
+
+        Entry(SignalData.Command dataType, byte[] payload) {
+            this.dataType = dataType;
+            this.payload = payload;
+            this.packetsCount = Integer.MAX_VALUE;
+        }
+
+        Entry(int firstPacket, int packetsCount) {
+            this.firstPacket = firstPacket;
+            this.packetsCount = packetsCount;
+        }
+    }
+
+    private static class Metrics {
+        private int maxDepth;
+        private long written;
+        private long totalWait; // [ns]
+        private long maxWait; // [ns]
+    }
+}
@@ -0,0 +1,96 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.SignalData;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes all packets of SignalPayloadData directly into one reusable buffer, packets are exposed
+ * as ByteBuffer slices of that buffer for CommInterface gathering send.
+ * Bytes are the same as of CommMessage.buildMessagesList messages, without creating the messages.
+ * Packets are kept until next encode, so they can be retransmitted.
+ */
+public class CommPacketizer {
+
+    public static final int PACKET_SIZE = CommMessage.PREAMBLE_SIZE + CommMessage.SIGNAL_CONSTRAINT_SIZE
+            + CommMessage.SIGNAL_DATA_PAYLOAD_SIZE + CommMessage.CRC_SIZE;
+
+    private static final int PAYLOAD_SIZE = CommMessage.SIGNAL_CONSTRAINT_SIZE + CommMessage.SIGNAL_DATA_PAYLOAD_SIZE;
+
+    private byte[] data = new byte[0];
+    private ByteBuffer[] packets = new ByteBuffer[0];
+    private int packetsCount;
+
+    /**
+     * Encodes given data as packets of dataCommand, returns packets count.
+     */
+    public int encode(final SignalData.Command dataCommand, final byte[] dataArray) {
+        packetsCount = (dataArray.length + CommMessage.SIGNAL_DATA_PAYLOAD_SIZE - 1) / CommMessage.SIGNAL_DATA_PAYLOAD_SIZE;
+        ensureCapacity(packetsCount);
+
+        final int command = dataCommand.getValue();
+        for (int i = 0; i < packetsCount; i++) {
+            final int packet = i * PACKET_SIZE;
+            final int payload = packet + CommMessage.PREAMBLE_SIZE;
+            data[packet] = '%';
+            data[packet + 1] = '%';
+            data[packet + 2] = '%';
+            data[packet + 3] = 0;
+            putShort(payload, command);
+            putShort(payload + 2, command >> 16);
+            putShort(payload + 4, packetsCount);
+            putShort(payload + 6, i);
+
+            final int dataOffset = i * CommMessage.SIGNAL_DATA_PAYLOAD_SIZE;
+            final int dataSize = Math.min(CommMessage.SIGNAL_DATA_PAYLOAD_SIZE, dataArray.length - dataOffset);
+            if (dataSize < CommMessage.SIGNAL_DATA_PAYLOAD_SIZE) {
+                // tail of the last packet repeats previous packet, as in buildMessagesList
+                final int tail = payload + CommMessage.SIGNAL_CONSTRAINT_SIZE + dataSize;
+                final int tailSize = CommMessage.SIGNAL_DATA_PAYLOAD_SIZE - dataSize;
+                if (i > 0) {
+                    System.arraycopy(data, tail - PACKET_SIZE, data, tail, tailSize);
+                } else {
+                    Arrays.fill(data, tail, tail + tailSize, (byte) 0);
+                }
+            }
+            System.arraycopy(dataArray, dataOffset, data, payload + CommMessage.SIGNAL_CONSTRAINT_SIZE, dataSize);
+
+            putShort(payload + PAYLOAD_SIZE, CommCrc.computeCrc16(data, payload, PAYLOAD_SIZE));
+        }
+        return packetsCount;
+    }
+
+    public int getPacketsCount() {
+        return packetsCount;
+    }
+
+    /**
+     * Returns array of all packets, packets from given range are rewound and ready to be sent.
+     * Array is valid until next encode.
+     */
+    public ByteBuffer[] getPackets(int first, int count) {
+        final int end = Math.min(first + count, packetsCount);
+        for (int i = first; i < end; i++) {
+            packets[i].clear();
+        }
+        return packets;
+    }
+
+    private void ensureCapacity(int count) {
+        if (packets.length >= count) {
+            return;
+        }
+        final int capacity = Math.max(count, packets.length * 2);
+        data = new byte[capacity * PACKET_SIZE];
+        packets = new ByteBuffer[capacity];
+        for (int i = 0; i < capacity; i++) {
+            packets[i] = ByteBuffer.wrap(data, i * PACKET_SIZE, PACKET_SIZE).slice();
+        }
+    }
+
+    private void putShort(int index, int value) {
+        data[index] = (byte) value;
+        data[index + 1] = (byte) (value >> 8);
+    }
+}
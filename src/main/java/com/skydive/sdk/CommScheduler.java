@@ -0,0 +1,92 @@
+package com.skydive.sdk;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Clock and scheduler of communication tasks. Everything in SDK that depends on time
+ * (CommTasks, ping measurement, UavSimulator delays, EmulatedLink in virtual mode) reads time
+ * and schedules work through scheduler given at construction, so the same code can run
+ * in real time (TimingWheelScheduler, default) or in virtual time (VirtualScheduler).
+ */
+public abstract class CommScheduler {
+
+    private static CommScheduler defaultScheduler;
+
+    /**
+     * Returns real time scheduler shared by all tasks that are not given explicit scheduler.
+     */
+    public static synchronized CommScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new TimingWheelScheduler("comm_scheduler",
+                    TimingWheelScheduler.DEFAULT_TICK_DURATION,
+                    TimingWheelScheduler.DEFAULT_WHEEL_SIZE,
+                    TimingWheelScheduler.DEFAULT_WORKERS_COUNT);
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * Actual time of scheduler [ns], only differences between values are meaningful.
+     */
+    public abstract long nanoTime();
+
+    /**
+     * Schedules task at fixed rate, first execution after delay [ns].
+     * Task with period 0 is executed once.
+     */
+    public abstract Handle schedule(Runnable task, long delay, long period);
+
+    /**
+     * Schedules task, that should be executed with minimal jitter,
+     * lateness of executions is recorded in histogram.
+     */
+    public Handle schedulePrecise(Runnable task, long delay, long period, LatenessHistogram histogram) {
+        return schedule(task, delay, period);
+    }
+
+    /**
+     * Executor of asynchronous work of components using the scheduler, like listener notifications.
+     * Real time scheduler executes it on its own threads, so it does not delay scheduled tasks.
+     */
+    public abstract Executor getExecutor();
+
+    /**
+     * Executor of work that may block, like application listeners. Real time scheduler adds
+     * threads as needed, so blocked work never delays other work.
+     */
+    public abstract Executor getBlockingExecutor();
+
+    /**
+     * Number of scheduled tasks, that were not cancelled or finished.
+     */
+    public abstract int getTasksCount();
+
+    /**
+     * Stops the scheduler, scheduled tasks are not executed any more.
+     */
+    public abstract void shutdown();
+
+    /**
+     * Scheduled task.
+     */
+    public interface Handle {
+        /**
+         * Changes period of the task, applied from the next execution.
+         */
+        void setPeriod(long period);
+
+        long getPeriod();
+
+        /**
+         * Cancels the task, can be called from the task itself.
+         */
+        void cancel();
+
+        boolean isCancelled();
+
+        /**
+         * Number of executions skipped because task was late or still running.
+         */
+        long getMissedCount();
+    }
+}
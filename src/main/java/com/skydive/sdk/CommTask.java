@@ -3,66 +3,106 @@ package com.skydive.sdk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 /**
  * Created by Bartosz Nawrot on 2016-08-30.
  * Abstract class for all synchronous communication tasks.
  * Controlled by start and stop methods, dynamically responds for frequency change.
+ * Tasks are executed by CommScheduler shared by all tasks, frequency change is applied in place.
  */
 public abstract class CommTask {
-    private Timer timer;
 
     private static Logger logger = LoggerFactory.getLogger(CommTask.class);
 
+    private static final long MIN_START_DELAY = 200000000L; // [ns]
+
+    private final CommScheduler scheduler;
+    private CommScheduler.Handle handle;
+
     // frequency of task [Hz]
     private double frequency;
 
-    private boolean isRunning;
+    private volatile boolean isRunning;
+    private boolean precise;
+
+    private final LatenessHistogram latenessHistogram = new LatenessHistogram();
 
     protected CommTask(double frequency) {
-        this.frequency = frequency;
-        this.isRunning = false;
+        this(frequency, CommScheduler.getDefault());
     }
 
-    public void start() {
-        start(frequency);
+    protected CommTask(double frequency, CommScheduler scheduler) {
+        this.frequency = frequency;
+        this.scheduler = scheduler;
+        this.isRunning = false;
     }
 
-    private void start(double freq) {
-        timer = new Timer(getTaskName() + "_timer");
-        TimerTask timerTask = new TimerTask() {
-            @Override
-            public void run() {
-                task();
-            }
-        };
-        long period = (long) ((1.0 / freq) * 1000);
-        long delay = period > 200 ? period : 200;
-        logger.info("Starting {} task with freq: {} Hz, and delay: {} ms", getTaskName(), freq, delay);
-        timer.scheduleAtFixedRate(timerTask, delay, period);
+    public synchronized void start() {
+        cancel();
+        final long period = getPeriod(frequency);
+        final long delay = Math.max(period, MIN_START_DELAY);
+        logger.info("Starting {} task with freq: {} Hz, and delay: {} ms", getTaskName(), frequency, delay / 1000000);
+        schedule(delay, period);
         isRunning = true;
         onStarted();
     }
 
-    public void stop() {
+    public synchronized void stop() {
         logger.info("Stopping task: " + getTaskName());
-        if (timer != null) {
-            timer.cancel();
-        }
+        cancel();
         isRunning = false;
         onStopped();
     }
 
-    public void setFrequency(double frequency) {
+    public synchronized void setFrequency(double frequency) {
         this.frequency = frequency;
         if (isRunning) {
-            stop();
-            start();
+            logger.info("Changing {} task freq to: {} Hz", getTaskName(), frequency);
+            handle.setPeriod(getPeriod(frequency));
+        }
+    }
+
+    /**
+     * Enables precise mode, in which task is executed with minimal jitter,
+     * see CommScheduler.schedulePrecise. Gives even spacing of executions at high frequencies
+     * for the cost of CPU time spent on spinning by precise thread of real time scheduler,
+     * shared by precise tasks of all links. Disabled by default.
+     * Lateness of executions is recorded in precise mode, see getLatenessHistogram.
+     */
+    public synchronized void setPrecise(boolean precise) {
+        if (this.precise == precise) {
+            return;
+        }
+        this.precise = precise;
+        if (isRunning) {
+            cancel();
+            final long period = getPeriod(frequency);
+            schedule(period, period);
         }
     }
 
+    public synchronized boolean isPrecise() {
+        return precise;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * Number of executions skipped since last start, because task was late or still running.
+     */
+    public synchronized long getMissedCount() {
+        return handle != null ? handle.getMissedCount() : 0;
+    }
+
+    public LatenessHistogram getLatenessHistogram() {
+        return latenessHistogram;
+    }
+
     protected abstract String getTaskName();
 
     protected abstract void task();
@@ -74,4 +114,28 @@ public abstract class CommTask {
     protected void onStopped() {
         // nothing to do here, user can override
     }
+
+    private void schedule(long delay, long period) {
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                task();
+            }
+        };
+        if (precise) {
+            handle = scheduler.schedulePrecise(runnable, delay, period, latenessHistogram);
+        } else {
+            handle = scheduler.schedule(runnable, delay, period);
+        }
+    }
+
+    private void cancel() {
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    private static long getPeriod(double frequency) {
+        return (long) (1e9 / frequency);
+    }
 }
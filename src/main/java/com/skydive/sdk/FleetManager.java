@@ -0,0 +1,219 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.interfaces.CommHub;
+import com.skydive.sdk.interfaces.LinkStatistics;
+import com.skydive.sdk.interfaces.TcpCommInterface;
+import com.skydive.sdk.interfaces.UdpCommInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manager of many vehicles, each of them handled by its own UavManager identified by id.
+ * All vehicles share execution resources of the fleet: I/O threads of CommHub and scheduler
+ * of CommTasks, so number of threads does not depend on number of vehicles.
+ * Events of all vehicles are passed to fleet listeners together with vehicle id,
+ * on blocking executor of the scheduler. Telemetry events of vehicle, that were not delivered yet
+ * are conflated, so slow fleet listener always gets the latest state and is not flooded.
+ */
+public class FleetManager {
+
+    private static Logger logger = LoggerFactory.getLogger(FleetManager.class);
+
+    private final CommHub hub;
+    private final CommScheduler scheduler;
+    private final double controlFreq;
+    private final double pingFreq;
+
+    private final ConcurrentHashMap<String, Vehicle> vehicles = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<FleetListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectedCount = new AtomicInteger(0);
+
+    private volatile int telemetryHistoryCapacity;
+
+    /**
+     * @param hub I/O threads shared by vehicles connected with connectTcp and connectUdp
+     * @param scheduler scheduler shared by tasks of all vehicles
+     */
+    public FleetManager(CommHub hub, CommScheduler scheduler, double controlFreq, double pingFreq) {
+        this.hub = hub;
+        this.scheduler = scheduler;
+        this.controlFreq = controlFreq;
+        this.pingFreq = pingFreq;
+    }
+
+    /**
+     * Creates UavManager of new vehicle, vehicle is not connected.
+     */
+    public UavManager addVehicle(String id) {
+        final Vehicle vehicle = new Vehicle(id, new UavManager(controlFreq, pingFreq, scheduler));
+        if (vehicles.putIfAbsent(id, vehicle) != null) {
+            throw new IllegalArgumentException("Vehicle already registered: " + id);
+        }
+        vehicle.uavManager.setTelemetryHistoryCapacity(telemetryHistoryCapacity);
+        vehicle.uavManager.registerConflatingListener(vehicle, 0.0);
+        logger.debug("Vehicle added: " + id);
+        return vehicle.uavManager;
+    }
+
+    /**
+     * Removes vehicle from the fleet, vehicle has to be disconnected by user before.
+     */
+    public UavManager removeVehicle(String id) {
+        final Vehicle vehicle = vehicles.remove(id);
+        if (vehicle == null) {
+            return null;
+        }
+        vehicle.uavManager.unregisterListener(vehicle);
+        vehicle.remove();
+        logger.debug("Vehicle removed: " + id);
+        return vehicle.uavManager;
+    }
+
+    public UavManager getVehicle(String id) {
+        final Vehicle vehicle = vehicles.get(id);
+        return vehicle != null ? vehicle.uavManager : null;
+    }
+
+    public Set<String> getVehicleIds() {
+        return vehicles.keySet();
+    }
+
+    public int getVehiclesCount() {
+        return vehicles.size();
+    }
+
+    /**
+     * Number of vehicles, that completed connection procedure and were not disconnected.
+     */
+    public int getConnectedCount() {
+        return connectedCount.get();
+    }
+
+    public boolean isConnected(String id) {
+        final Vehicle vehicle = vehicles.get(id);
+        return vehicle != null && vehicle.connected.get();
+    }
+
+    /**
+     * Returns ids of connected vehicles.
+     */
+    public List<String> getConnectedIds() {
+        final List<String> result = new ArrayList<>();
+        for (Vehicle vehicle : vehicles.values()) {
+            if (vehicle.connected.get()) {
+                result.add(vehicle.id);
+            }
+        }
+        return result;
+    }
+
+    public void connect(String id, CommInterface commInterface) {
+        getVehicleOrThrow(id).uavManager.connect(commInterface);
+    }
+
+    public void connectTcp(String id, String host, int port) {
+        connect(id, new TcpCommInterface(host, port, hub));
+    }
+
+    public void connectUdp(String id, String host, int port) {
+        connect(id, new UdpCommInterface(host, port, hub));
+    }
+
+    /**
+     * Capacity of history of debug data (see TelemetryHistory) of vehicles added later,
+     * 0 (default) for no history.
+     */
+    public void setTelemetryHistoryCapacity(int capacity) {
+        this.telemetryHistoryCapacity = capacity;
+    }
+
+    public int getTelemetryHistoryCapacity() {
+        return telemetryHistoryCapacity;
+    }
+
+    public CommHub getHub() {
+        return hub;
+    }
+
+    public CommScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sum of link statistics of all vehicles connected over the hub.
+     */
+    public LinkStatistics getStatistics() {
+        return hub.getStatistics();
+    }
+
+    public void registerListener(FleetListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void unregisterListener(FleetListener listener) {
+        listeners.remove(listener);
+    }
+
+    private Vehicle getVehicleOrThrow(String id) {
+        final Vehicle vehicle = vehicles.get(id);
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Unknown vehicle: " + id);
+        }
+        return vehicle;
+    }
+
+    public interface FleetListener {
+        void handleVehicleEvent(String id, UavEvent event, UavManager uavManager);
+    }
+
+    private class Vehicle implements UavManager.UavManagerListener {
+        private final String id;
+        private final UavManager uavManager;
+        // changed only by compareAndSet, so connection is counted down once by disconnection or removal
+        private final AtomicBoolean connected = new AtomicBoolean(false);
+        private volatile boolean removed;
+
+        Vehicle(String id, UavManager uavManager) {
+            this.id = id;
+            this.uavManager = uavManager;
+        }
+
+        void remove() {
+            removed = true;
+            if (connected.compareAndSet(true, false)) {
+                connectedCount.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void handleUavEvent(UavEvent event, UavManager uavManager) {
+            switch (event.getType()) {
+                case CONNECTED:
+                    if (!removed && connected.compareAndSet(false, true)) {
+                        connectedCount.incrementAndGet();
+                        // removal, that did not see the connection, is completed here
+                        if (removed && connected.compareAndSet(true, false)) {
+                            connectedCount.decrementAndGet();
+                        }
+                    }
+                    break;
+                case DISCONNECTED:
+                    if (connected.compareAndSet(true, false)) {
+                        connectedCount.decrementAndGet();
+                    }
+                    break;
+            }
+            for (FleetListener listener : listeners) {
+                listener.handleVehicleEvent(id, event, uavManager);
+            }
+        }
+    }
+}
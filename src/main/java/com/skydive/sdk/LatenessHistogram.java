@@ -0,0 +1,103 @@
+package com.skydive.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of task execution lateness, time from execution deadline to actual start.
+ * Bucket 0 counts executions late less than 1 us, bucket i counts lateness
+ * in range [2^(i-1), 2^i) us, last bucket counts everything above.
+ * Recorded by task thread, can be read by any thread.
+ */
+public class LatenessHistogram {
+
+    public static final int BUCKETS_COUNT = 24;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param lateness [ns], early execution is recorded as 0
+     */
+    public void record(long lateness) {
+        lateness = Math.max(lateness, 0);
+        final long micros = lateness / 1000;
+        final int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS_COUNT - 1);
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(lateness);
+        long actualMax;
+        while (lateness > (actualMax = max.get())) {
+            if (max.compareAndSet(actualMax, lateness)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Upper bound of lateness counted in bucket [ns].
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket < BUCKETS_COUNT - 1 ? (1L << bucket) * 1000 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Mean lateness [ns].
+     */
+    public double getMean() {
+        final long actualCount = count.get();
+        return actualCount > 0 ? (double) total.get() / actualCount : 0.0;
+    }
+
+    /**
+     * Maximal lateness [ns].
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Lateness not exceeded by given fraction (0.0 - 1.0) of executions [ns],
+     * resolution is limited to bucket upper bound.
+     */
+    public long getPercentile(double fraction) {
+        long remaining = (long) Math.ceil(count.get() * fraction);
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            remaining -= buckets.get(i);
+            if (remaining <= 0) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatenessHistogram{" +
+                "count=" + getCount() +
+                ", mean=" + (long) getMean() / 1000 + "us" +
+                ", p50=" + getPercentile(0.5) / 1000 + "us" +
+                ", p99=" + getPercentile(0.99) / 1000 + "us" +
+                ", max=" + getMax() / 1000 + "us" +
+                '}';
+    }
+}
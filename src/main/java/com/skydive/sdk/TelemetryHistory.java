@@ -0,0 +1,309 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.DebugData;
+import com.skydive.sdk.data.DebugDataView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History of debug data of vehicle, kept in fixed capacity ring of primitive columns: one float
+ * array for each numeric field, timestamps, controller states and flags, so memory is allocated once
+ * and does not depend on flight duration. When ring is full the oldest samples are overwritten.
+ * Sample takes 59 bytes, e.g. 30 minutes of debug data at 25 Hz (45000 samples) takes about 2.7 MB.
+ * Samples are added by communication thread, queries can be made from any thread.
+ * Timestamps are times of scheduler of vehicle [ns] and have to be non decreasing.
+ * Range [from, to) with to not greater than from is empty.
+ */
+public class TelemetryHistory {
+
+    public enum Field {
+        ROLL,
+        PITCH,
+        YAW,
+        LATITUDE,
+        LONGITUDE,
+        RELATIVE_ALTITUDE,
+        ABSOLUTE_ALTITUDE,
+        VERTICAL_VELOCITY,
+        VELOCITY,
+        USED_THROTTLE,
+        DISTANCE_TO_BASE,
+        BATTERY
+    }
+
+    private final int capacity;
+
+    // guarded by this
+    private final long[] timestamps;
+    private final float[][] columns;
+    private final short[] controllerStates;
+    private final byte[] flags;
+    private int head; // index of the next sample
+    private int size;
+
+    public TelemetryHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity has to be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.columns = new float[Field.values().length][capacity];
+        this.controllerStates = new short[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    public synchronized void add(long timestamp, DebugData debugData) {
+        put(timestamp, debugData.getRoll(), debugData.getPitch(), debugData.getYaw(),
+                debugData.getLatitude(), debugData.getLongitude(),
+                debugData.getRelativeAltitude(), debugData.getAbsoluteAltitude(),
+                debugData.getVerticalVelocity(), debugData.getVelocity(),
+                debugData.getUsedThrottle(), debugData.getDistanceToBase(), debugData.getBattery(),
+                debugData.getControllerState() != null ? debugData.getControllerState().getValue() : 0,
+                debugData.getFlags());
+    }
+
+    /**
+     * Adds sample decoded straight from wrapped frame.
+     */
+    public synchronized void add(long timestamp, DebugDataView debugData) {
+        put(timestamp, debugData.getRoll(), debugData.getPitch(), debugData.getYaw(),
+                debugData.getLatitude(), debugData.getLongitude(),
+                debugData.getRelativeAltitude(), debugData.getAbsoluteAltitude(),
+                debugData.getVerticalVelocity(), debugData.getVelocity(),
+                debugData.getUsedThrottle(), debugData.getDistanceToBase(), debugData.getBattery(),
+                debugData.getControllerStateValue(),
+                debugData.getFlags());
+    }
+
+    // writes the next slot of ring, called with lock held
+    private void put(long timestamp, float roll, float pitch, float yaw,
+                     float latitude, float longitude,
+                     float relativeAltitude, float absoluteAltitude,
+                     float verticalVelocity, float velocity,
+                     float usedThrottle, float distanceToBase, byte battery,
+                     short controllerState, byte flags) {
+        final int i = head;
+        timestamps[i] = timestamp;
+        columns[Field.ROLL.ordinal()][i] = roll;
+        columns[Field.PITCH.ordinal()][i] = pitch;
+        columns[Field.YAW.ordinal()][i] = yaw;
+        columns[Field.LATITUDE.ordinal()][i] = latitude;
+        columns[Field.LONGITUDE.ordinal()][i] = longitude;
+        columns[Field.RELATIVE_ALTITUDE.ordinal()][i] = relativeAltitude;
+        columns[Field.ABSOLUTE_ALTITUDE.ordinal()][i] = absoluteAltitude;
+        columns[Field.VERTICAL_VELOCITY.ordinal()][i] = verticalVelocity;
+        columns[Field.VELOCITY.ordinal()][i] = velocity;
+        columns[Field.USED_THROTTLE.ordinal()][i] = usedThrottle;
+        columns[Field.DISTANCE_TO_BASE.ordinal()][i] = distanceToBase;
+        columns[Field.BATTERY.ordinal()][i] = battery;
+        this.controllerStates[i] = controllerState;
+        this.flags[i] = flags;
+        head = (i + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Timestamp of the oldest sample, Long.MIN_VALUE when history is empty.
+     */
+    public synchronized long getOldestTimestamp() {
+        return size > 0 ? timestamps[index(0)] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Timestamp of the newest sample, Long.MIN_VALUE when history is empty.
+     */
+    public synchronized long getNewestTimestamp() {
+        return size > 0 ? timestamps[index(size - 1)] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Copies values of the last count samples of field, from the oldest one.
+     * Returns number of copied samples, limited by size of history and length of arrays.
+     * @param timestamps destination of timestamps, can be null
+     */
+    public synchronized int getLast(Field field, int count, float[] values, long[] timestamps) {
+        count = Math.min(Math.min(count, size), values.length);
+        if (timestamps != null) {
+            count = Math.min(count, timestamps.length);
+        }
+        return copy(field, size - count, size, values, timestamps);
+    }
+
+    /**
+     * Copies values of field of samples with timestamps in range [from, to).
+     * Returns number of copied samples, limited by length of arrays.
+     * @param timestamps destination of timestamps, can be null
+     */
+    public synchronized int getRange(Field field, long from, long to, float[] values, long[] timestamps) {
+        final int first = lowerBound(from);
+        int end = Math.max(first, lowerBound(to));
+        end = Math.min(end, first + values.length);
+        if (timestamps != null) {
+            end = Math.min(end, first + timestamps.length);
+        }
+        return copy(field, first, end, values, timestamps);
+    }
+
+    /**
+     * Returns statistics of field in range [from, to), null when there are no samples in range.
+     */
+    public synchronized Window getStatistics(Field field, long from, long to) {
+        final int first = lowerBound(from);
+        final int end = lowerBound(to);
+        if (end <= first) {
+            return null;
+        }
+        final Window window = new Window(from);
+        accumulate(window, columns[field.ordinal()], first, end);
+        return window;
+    }
+
+    /**
+     * Downsamples field in range [from, to) to windows of given duration [ns], e.g. for charts.
+     * Windows without samples are skipped.
+     */
+    public synchronized List<Window> getWindows(Field field, long from, long to, long windowDuration) {
+        if (windowDuration <= 0) {
+            throw new IllegalArgumentException("Window duration has to be positive: " + windowDuration);
+        }
+        final List<Window> result = new ArrayList<>();
+        final float[] column = columns[field.ordinal()];
+        int i = lowerBound(from);
+        final int end = lowerBound(to);
+        while (i < end) {
+            final long start = from + (timestamps[index(i)] - from) / windowDuration * windowDuration;
+            final int windowEnd = Math.min(lowerBound(start + windowDuration), end);
+            final Window window = new Window(start);
+            accumulate(window, column, i, windowEnd);
+            result.add(window);
+            i = windowEnd;
+        }
+        return result;
+    }
+
+    /**
+     * Returns controller state of the last count samples, from the oldest one.
+     */
+    public synchronized int getLastControllerStates(int count, DebugData.ControllerState[] states) {
+        count = Math.min(Math.min(count, size), states.length);
+        for (int i = 0; i < count; i++) {
+            states[i] = DebugData.ControllerState.getControllerState(controllerStates[index(size - count + i)]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns flags (see DebugData.getFlags) of the last count samples, from the oldest one.
+     */
+    public synchronized int getLastFlags(int count, byte[] flags) {
+        count = Math.min(Math.min(count, size), flags.length);
+        for (int i = 0; i < count; i++) {
+            flags[i] = this.flags[index(size - count + i)];
+        }
+        return count;
+    }
+
+    /**
+     * Statistics of field in time window.
+     */
+    public static class Window {
+        private final long start;
+        private int count;
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+        private double sum;
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public float getMin() {
+            return min;
+        }
+
+        public float getMax() {
+            return max;
+        }
+
+        public float getAverage() {
+            return count > 0 ? (float) (sum / count) : 0.0f;
+        }
+
+        @Override
+        public String toString() {
+            return "Window:[ start: " + start + ", count: " + count
+                    + ", min: " + min + ", max: " + max + ", avg: " + getAverage() + " ]";
+        }
+    }
+
+    /**
+     * Returns ring index of logical position, 0 is the oldest sample.
+     */
+    private int index(int position) {
+        final int i = head - size + position;
+        return i < 0 ? i + capacity : i;
+    }
+
+    /**
+     * Returns logical position of the first sample with timestamp not less than given one.
+     */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (timestamps[index(middle)] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int copy(Field field, int first, int end, float[] values, long[] timestamps) {
+        final float[] column = columns[field.ordinal()];
+        for (int i = first; i < end; i++) {
+            final int index = index(i);
+            values[i - first] = column[index];
+            if (timestamps != null) {
+                timestamps[i - first] = this.timestamps[index];
+            }
+        }
+        return end - first;
+    }
+
+    private void accumulate(Window window, float[] column, int first, int end) {
+        for (int i = first; i < end; i++) {
+            final float value = column[index(i)];
+            window.min = Math.min(window.min, value);
+            window.max = Math.max(window.max, value);
+            window.sum += value;
+        }
+        window.count += end - first;
+    }
+}
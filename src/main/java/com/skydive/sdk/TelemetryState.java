@@ -0,0 +1,182 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.AutopilotData;
+import com.skydive.sdk.data.DebugData;
+import com.skydive.sdk.data.DebugDataView;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Actual telemetry of vehicle: debug data, autopilot data and communication delay, updated by
+ * communication thread and read by any number of threads (UI, control logic) as consistent snapshot.
+ * Reads are optimistic (seqlock): reader copies the state into its own Snapshot without locking
+ * and allocation, and repeats the copy only when it overlapped with update. Readers never block
+ * the writer.
+ */
+public class TelemetryState {
+
+    private final StampedLock lock = new StampedLock();
+
+    // guarded by lock
+    private final DebugData debugData = new DebugData();
+    private final AutopilotData autopilotData = new AutopilotData();
+    private long commDelay;
+    private long debugVersion;
+    private long autopilotVersion;
+    private long version;
+
+    long update(DebugData debugData) {
+        final long stamp = lock.writeLock();
+        try {
+            this.debugData.copyFrom(debugData);
+            version++;
+            return ++debugVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Decodes all fields of wrapped frame straight into preallocated debug data.
+     */
+    long update(DebugDataView debugData) {
+        final long stamp = lock.writeLock();
+        try {
+            debugData.copyTo(this.debugData);
+            version++;
+            return ++debugVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void update(AutopilotData autopilotData) {
+        final long stamp = lock.writeLock();
+        try {
+            this.autopilotData.copyFrom(autopilotData);
+            autopilotVersion++;
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void updateCommDelay(long commDelay) {
+        final long stamp = lock.writeLock();
+        try {
+            this.commDelay = commDelay;
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies actual state into given snapshot.
+     * Returns version of the state, incremented by every update.
+     */
+    public long read(Snapshot snapshot) {
+        while (true) {
+            final long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                // update in progress
+                continue;
+            }
+            snapshot.debugData.copyFrom(debugData);
+            snapshot.autopilotData.copyFrom(autopilotData);
+            snapshot.commDelay = commDelay;
+            snapshot.debugVersion = debugVersion;
+            snapshot.autopilotVersion = autopilotVersion;
+            snapshot.version = version;
+            if (lock.validate(stamp)) {
+                return snapshot.version;
+            }
+        }
+    }
+
+    /**
+     * Copies only actual debug data into given one.
+     * Returns number of debug data updates, 0 when debug data was not received yet.
+     */
+    public long readDebugData(DebugData debugData) {
+        while (true) {
+            final long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                continue;
+            }
+            debugData.copyFrom(this.debugData);
+            final long result = debugVersion;
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns number of debug data updates.
+     */
+    public long getDebugVersion() {
+        while (true) {
+            final long stamp = lock.tryOptimisticRead();
+            final long result = debugVersion;
+            if (stamp != 0 && lock.validate(stamp)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns version of the state, reader polling the state can skip copying when it did not change.
+     */
+    public long getVersion() {
+        while (true) {
+            final long stamp = lock.tryOptimisticRead();
+            final long result = version;
+            if (stamp != 0 && lock.validate(stamp)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Copy of telemetry state owned by reader, can be reused by subsequent reads.
+     */
+    public static class Snapshot {
+        private final DebugData debugData = new DebugData();
+        private final AutopilotData autopilotData = new AutopilotData();
+        private long commDelay;
+        private long debugVersion;
+        private long autopilotVersion;
+        private long version;
+
+        public DebugData getDebugData() {
+            return debugData;
+        }
+
+        public AutopilotData getAutopilotData() {
+            return autopilotData;
+        }
+
+        public long getCommDelay() {
+            return commDelay;
+        }
+
+        /**
+         * Number of debug data updates, 0 when debug data was not received yet.
+         */
+        public long getDebugVersion() {
+            return debugVersion;
+        }
+
+        /**
+         * Number of autopilot data updates, 0 when autopilot data was not received yet.
+         */
+        public long getAutopilotVersion() {
+            return autopilotVersion;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
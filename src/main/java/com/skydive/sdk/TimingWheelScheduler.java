@@ -0,0 +1,485 @@
+package com.skydive.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Real time CommScheduler, hashed timing wheel shared by CommTasks of all links. Single wheel
+ * thread advances the wheel every tick and passes due tasks to fixed pool of workers, so number
+ * of threads does not depend on number of tasks and tasks can be started, stopped and retimed
+ * without creating threads.
+ * Tasks are executed at fixed rate, period can be changed in place and is used from the next
+ * execution. Execution is skipped (and counted as missed) when previous one is still running
+ * or when it is late more than one period, so late task never runs in burst.
+ * Precise tasks are not kept in the wheel, all of them are executed by single precise thread,
+ * created on first use, so precise mode does not add threads per task either.
+ * Executor (see getExecutor) has its own pool of threads, created on first use. Blocking executor
+ * (see getBlockingExecutor) creates threads as needed and releases them when idle.
+ */
+public class TimingWheelScheduler extends CommScheduler {
+
+    private static Logger logger = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    public static final long DEFAULT_TICK_DURATION = 1000000L; // [ns]
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    public static final int DEFAULT_WORKERS_COUNT = 2;
+
+    // time before deadline, when precise thread stops parking and spins
+    private static final long SPIN_THRESHOLD = 250000L; // [ns]
+
+    private final String name;
+    private final long tickDuration; // [ns]
+    private final ArrayList<WheelHandle>[] wheel;
+    private final int mask;
+    private final long startTime;
+
+    private final ConcurrentLinkedQueue<WheelHandle> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tasksCount = new AtomicInteger(0);
+    private final ExecutorService workers;
+    private final int workersCount;
+    private ExecutorService executor;
+    private ExecutorService blockingExecutor;
+    private final Thread thread;
+
+    // precise tasks ordered by deadline, guarded by itself
+    private final PriorityQueue<PreciseHandle> preciseTasks = new PriorityQueue<>(8, new Comparator<PreciseHandle>() {
+        @Override
+        public int compare(PreciseHandle first, PreciseHandle second) {
+            return Long.compare(first.deadline, second.deadline);
+        }
+    });
+    private Thread preciseThread;
+
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    // wheel thread state
+    private long tick;
+
+    /**
+     * @param tickDuration wheel resolution [ns]
+     * @param wheelSize number of wheel buckets, power of 2
+     * @param workersCount threads executing tasks, 0 to execute tasks on the wheel thread
+     */
+    public TimingWheelScheduler(final String name, long tickDuration, int wheelSize, int workersCount) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size has to be power of 2: " + wheelSize);
+        }
+        this.name = name;
+        this.tickDuration = tickDuration;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final ArrayList<WheelHandle>[] wheel = (ArrayList<WheelHandle>[]) new ArrayList[wheelSize];
+        this.wheel = wheel;
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = wheelSize - 1;
+        this.startTime = System.nanoTime();
+        this.workersCount = workersCount;
+        if (workersCount > 0) {
+            this.workers = Executors.newFixedThreadPool(workersCount, createThreadFactory(name + "_worker_"));
+        } else {
+            this.workers = null;
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Handle schedule(Runnable task, long delay, long period) {
+        WheelHandle handle = new WheelHandle(task, System.nanoTime() + delay, period);
+        tasksCount.incrementAndGet();
+        added.add(handle);
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+        return handle;
+    }
+
+    /**
+     * Executes task by high priority precise thread shared by all precise tasks, that parks until
+     * short time before the earliest deadline and spins for the rest of it. Gives even spacing
+     * of executions at high frequencies for the cost of CPU time spent on spinning.
+     * Precise tasks are executed one after another, so they have to be short.
+     */
+    @Override
+    public Handle schedulePrecise(Runnable task, long delay, long period, LatenessHistogram histogram) {
+        final PreciseHandle handle = new PreciseHandle(task, System.nanoTime() + delay, period, histogram);
+        final Thread preciseThread;
+        synchronized (preciseTasks) {
+            preciseTasks.add(handle);
+            if (this.preciseThread == null) {
+                this.preciseThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        preciseLoop();
+                    }
+                }, name + "_precise");
+                this.preciseThread.setDaemon(true);
+                this.preciseThread.setPriority(Thread.MAX_PRIORITY);
+                this.preciseThread.start();
+            }
+            preciseThread = this.preciseThread;
+        }
+        LockSupport.unpark(preciseThread);
+        return handle;
+    }
+
+    @Override
+    public synchronized Executor getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(workersCount, 1), createThreadFactory(name + "_executor_"));
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized Executor getBlockingExecutor() {
+        if (blockingExecutor == null) {
+            blockingExecutor = Executors.newCachedThreadPool(createThreadFactory(name + "_blocking_"));
+        }
+        return blockingExecutor;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        synchronized (preciseTasks) {
+            if (preciseThread != null) {
+                LockSupport.unpark(preciseThread);
+            }
+        }
+        if (workers != null) {
+            workers.shutdown();
+        }
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            if (blockingExecutor != null) {
+                blockingExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Number of tasks in the wheel, that were not cancelled or finished.
+     */
+    @Override
+    public int getTasksCount() {
+        return tasksCount.get();
+    }
+
+    private class WheelHandle implements Handle {
+        private final Runnable task;
+        private final AtomicBoolean executing = new AtomicBoolean(false);
+        private volatile long period; // [ns]
+        private volatile boolean cancelled;
+        private volatile long missed;
+        private boolean released;
+        // wheel thread state
+        private long deadline;
+
+        private WheelHandle(Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void setPeriod(long period) {
+            this.period = period;
+        }
+
+        @Override
+        public long getPeriod() {
+            return period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            release();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public long getMissedCount() {
+            return missed;
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                tasksCount.decrementAndGet();
+            }
+        }
+
+        private void execute() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("Scheduled task failed", e);
+            } finally {
+                executing.set(false);
+            }
+        }
+    }
+
+    private class PreciseHandle implements Handle {
+        private final Runnable task;
+        private final LatenessHistogram histogram;
+        private volatile long period; // [ns]
+        private volatile boolean cancelled;
+        private volatile long missed;
+        // guarded by preciseTasks while queued
+        private long deadline;
+
+        private PreciseHandle(Runnable task, long deadline, long period, LatenessHistogram histogram) {
+            this.task = task;
+            this.histogram = histogram;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void setPeriod(long period) {
+            this.period = period;
+        }
+
+        @Override
+        public long getPeriod() {
+            return period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            final Thread preciseThread;
+            synchronized (preciseTasks) {
+                preciseTasks.remove(this);
+                preciseThread = TimingWheelScheduler.this.preciseThread;
+            }
+            LockSupport.unpark(preciseThread);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public long getMissedCount() {
+            return missed;
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private void preciseLoop() {
+        while (running) {
+            PreciseHandle handle;
+            long deadline;
+            synchronized (preciseTasks) {
+                handle = preciseTasks.peek();
+                deadline = handle != null ? handle.deadline : 0;
+            }
+            if (handle == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > SPIN_THRESHOLD) {
+                // woken up earlier by new or cancelled task
+                LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD);
+                continue;
+            }
+            while (remaining > 0 && !handle.cancelled) {
+                remaining = deadline - System.nanoTime();
+            }
+            synchronized (preciseTasks) {
+                if (preciseTasks.peek() != handle) {
+                    // cancelled or preceded by new task while spinning
+                    continue;
+                }
+                preciseTasks.poll();
+            }
+            handle.histogram.record(-remaining);
+            try {
+                handle.task.run();
+            } catch (RuntimeException e) {
+                logger.warn("Scheduled task failed", e);
+            }
+            final long period = handle.period;
+            if (period <= 0) {
+                continue;
+            }
+            synchronized (preciseTasks) {
+                if (handle.cancelled) {
+                    continue;
+                }
+                handle.deadline += period;
+                final long late = System.nanoTime() - handle.deadline;
+                if (late > period) {
+                    // skip missed executions instead of running them in burst
+                    final long skipped = late / period;
+                    handle.missed += skipped;
+                    handle.deadline += skipped * period;
+                }
+                preciseTasks.add(handle);
+            }
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            if (tasksCount.get() == 0 && added.isEmpty()) {
+                idle = true;
+                if (tasksCount.get() == 0 && added.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                // nothing is waiting in the wheel, so idle ticks can be skipped
+                tick = Math.max(tick, currentTick());
+                continue;
+            }
+            final long nextTickTime = startTime + (tick + 1) * tickDuration;
+            long remaining;
+            while ((remaining = nextTickTime - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            transferAdded();
+            final long currentTick = currentTick();
+            // when wheel thread is late every bucket is visited only once
+            tick = Math.max(tick, currentTick - mask);
+            for (; tick <= currentTick; tick++) {
+                expireBucket(tick);
+            }
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / tickDuration;
+    }
+
+    private void transferAdded() {
+        WheelHandle handle;
+        while ((handle = added.poll()) != null) {
+            place(handle);
+        }
+    }
+
+    private void place(WheelHandle handle) {
+        final long deadlineTick = Math.max((handle.deadline - startTime + tickDuration - 1) / tickDuration, tick + 1);
+        wheel[(int) (deadlineTick & mask)].add(handle);
+    }
+
+    private void expireBucket(long tick) {
+        final ArrayList<WheelHandle> bucket = wheel[(int) (tick & mask)];
+        final long tickTime = startTime + tick * tickDuration;
+        int kept = 0;
+        final int size = bucket.size();
+        for (int i = 0; i < size; i++) {
+            final WheelHandle handle = bucket.get(i);
+            if (handle.cancelled) {
+                continue;
+            }
+            if (handle.deadline > tickTime) {
+                // deadline in one of the next rounds
+                bucket.set(kept++, handle);
+                continue;
+            }
+            fire(handle);
+            reschedule(handle);
+        }
+        for (int i = size - 1; i >= kept; i--) {
+            bucket.remove(i);
+        }
+    }
+
+    private void fire(final WheelHandle handle) {
+        if (!handle.executing.compareAndSet(false, true)) {
+            handle.missed++;
+            return;
+        }
+        if (workers == null) {
+            handle.execute();
+        } else {
+            try {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle.execute();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // scheduler is shutting down
+                handle.executing.set(false);
+            }
+        }
+    }
+
+    private void reschedule(WheelHandle handle) {
+        if (handle.cancelled) {
+            return;
+        }
+        final long period = handle.period;
+        if (period <= 0) {
+            // single execution task is done
+            handle.release();
+            return;
+        }
+        handle.deadline += period;
+        final long now = System.nanoTime();
+        if (handle.deadline < now - period) {
+            // skip missed executions instead of running them in burst
+            final long missed = (now - handle.deadline) / period;
+            handle.missed += missed;
+            handle.deadline += missed * period;
+        }
+        place(handle);
+    }
+}
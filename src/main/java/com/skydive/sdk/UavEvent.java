@@ -46,6 +46,14 @@ public class UavEvent {
         return message;
     }
 
+    /**
+     * Telemetry event only tells that actual state in UavManager was updated, so it can be conflated:
+     * when previous event of the same type was not delivered yet, the new one brings nothing new.
+     */
+    public boolean isTelemetry() {
+        return type == Type.DEBUG_UPDATED || type == Type.AUTOPILOT_UPDATED || type == Type.PING_UPDATED;
+    }
+
     @Override
     public String toString() {
         return type.toString();
@@ -6,7 +6,14 @@ import com.skydive.sdk.events.UserEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by Bartosz Nawrot on 2016-10-14.
@@ -14,15 +21,30 @@ import java.util.ArrayList;
  * for controlling the connected UAV. By this class user can start application loops and any action
  * over application loop, including flight loop. Also this class posts events from UAV as UavEvents
  * to all listeners.
+ * Listeners are notified asynchronously by event executor, so communication threads never execute
+ * application code. Each listener has its own bounded queue of events, delivered in order and never
+ * concurrently. When listener does not keep up and its queue is full, the oldest telemetry event
+ * is dropped. Listener can also receive only the latest telemetry, see registerConflatingListener.
+ * Listener subscribed only to some event types (see subscribe) is not touched by other events.
  */
 public class UavManager {
 
     private static Logger logger = LoggerFactory.getLogger(UavManager.class);
 
-    private ArrayList<UavManagerListener> listeners;
+    public static final int LISTENER_QUEUE_CAPACITY = 256;
 
-    // data received form board
-    private DebugData debugData;
+    // events delivered by single run of listener queue, so listeners share executor fairly
+    private static final int LISTENER_BATCH_SIZE = 64;
+
+    private final CopyOnWriteArrayList<ListenerQueue> listeners;
+    // listeners of each event type, rebuilt on every registration
+    private volatile EnumMap<UavEvent.Type, ListenerQueue[]> subscribers;
+    private final Executor eventExecutor;
+
+    // data received form board, debug data is kept in telemetryState, copy for getDebugData is created on demand
+    private volatile DebugDataCopy debugDataCopy;
+    // wraps received frames on communication thread
+    private final DebugDataView debugDataView = new DebugDataView();
     private AutopilotData autopilotData;
 
     // settings received form board at startup connection and after calibrations
@@ -35,15 +57,42 @@ public class UavManager {
     // actual communication delay
     private long commDelay;
 
+    // consistent view of telemetry for readers on other threads
+    private final TelemetryState telemetryState = new TelemetryState();
+
+    // history of debug data, null when disabled
+    private volatile TelemetryHistory telemetryHistory;
+
     // main communication handler
     private CommHandler commHandler;
 
     private ControlDataSource controlDataSource;
 
     public UavManager(double controlFreq, double pingFreq) {
-        this.listeners = new ArrayList<>();
+        this(controlFreq, pingFreq, CommScheduler.getDefault());
+    }
+
+    /**
+     * Listeners are notified on blocking executor of the scheduler, so listener that blocks holds
+     * only its own thread and does not stop other listeners, managers nor communication.
+     * @param scheduler clock and scheduler of all communication tasks, see VirtualScheduler
+     */
+    public UavManager(double controlFreq, double pingFreq, CommScheduler scheduler) {
+        this(controlFreq, pingFreq, scheduler, scheduler.getBlockingExecutor());
+    }
+
+    /**
+     * Each listener is run by at most one task of eventExecutor at a time. Listeners that may block
+     * need executor with a thread for each of them, like CommScheduler.getBlockingExecutor,
+     * otherwise they stop all listeners sharing the executor.
+     * @param eventExecutor executor notifying listeners, e.g. executor of application UI thread
+     */
+    public UavManager(double controlFreq, double pingFreq, CommScheduler scheduler, Executor eventExecutor) {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.subscribers = buildSubscribers();
+        this.eventExecutor = eventExecutor;
         this.commDelay = 0;
-        this.commHandler = new CommHandler(this, controlFreq, pingFreq);
+        this.commHandler = new CommHandler(this, controlFreq, pingFreq, scheduler);
     }
 
     public CommHandler getCommHandler() {
@@ -190,8 +239,8 @@ public class UavManager {
         } catch (Exception e) {
             logger.info("UavManager update comm state error: " + e.getMessage());
         }
-        for (UavManagerListener listener : listeners) {
-            listener.handleUavEvent(event, this);
+        for (ListenerQueue queue : subscribers.get(event.getType())) {
+            queue.offer(event);
         }
     }
 
@@ -209,12 +258,33 @@ public class UavManager {
     }
 
     public void setDebugData(DebugData debugData) {
-        this.debugData = debugData;
+        debugDataCopy = new DebugDataCopy(debugData, telemetryState.update(debugData));
+        final TelemetryHistory history = telemetryHistory;
+        if (history != null) {
+            history.add(commHandler.getScheduler().nanoTime(), debugData);
+        }
+        notifyUavEvent(new UavEvent(UavEvent.Type.DEBUG_UPDATED));
+    }
+
+    /**
+     * Updates debug data from received CONTROL message without allocation, frame is wrapped
+     * by reused view and all its fields are decoded straight into preallocated telemetry state
+     * and history. DebugData object is created only when it is requested by getDebugData.
+     * Called on communication thread.
+     */
+    public void setDebugData(CommMessage message) {
+        debugDataView.wrap(message);
+        telemetryState.update(debugDataView);
+        final TelemetryHistory history = telemetryHistory;
+        if (history != null) {
+            history.add(commHandler.getScheduler().nanoTime(), debugDataView);
+        }
         notifyUavEvent(new UavEvent(UavEvent.Type.DEBUG_UPDATED));
     }
 
     public void setAutopilotData(AutopilotData autopilotData) {
         this.autopilotData = autopilotData;
+        telemetryState.update(autopilotData);
         notifyUavEvent(new UavEvent(UavEvent.Type.AUTOPILOT_UPDATED));
     }
 
@@ -236,11 +306,27 @@ public class UavManager {
     public void setCommDelay(long commDelay) {
         logger.debug("Ping delay updated: {} ms", commDelay);
         this.commDelay = commDelay;
+        telemetryState.updateCommDelay(commDelay);
         notifyUavEvent(new UavEvent(UavEvent.Type.PING_UPDATED));
     }
 
+    /**
+     * Returns the last received debug data, replaced by communication thread with every update.
+     * Data received in frames is copied from telemetry state on the first call after update.
+     * Use getTelemetryState for consistent view of telemetry from other threads.
+     */
     public DebugData getDebugData() {
-        return debugData;
+        final DebugDataCopy copy = debugDataCopy;
+        if (copy != null && copy.version == telemetryState.getDebugVersion()) {
+            return copy.debugData;
+        }
+        final DebugData result = new DebugData();
+        final long version = telemetryState.readDebugData(result);
+        if (version == 0) {
+            return null;
+        }
+        debugDataCopy = new DebugDataCopy(result, version);
+        return result;
     }
 
     public AutopilotData getAutopilotData() {
@@ -263,22 +349,376 @@ public class UavManager {
         return commDelay;
     }
 
-    public void registerListener(UavManagerListener listener) {
-        listeners.add(listener);
+    /**
+     * Telemetry state, that can be read as consistent snapshot from any thread without locking.
+     */
+    public TelemetryState getTelemetryState() {
+        return telemetryState;
+    }
+
+    /**
+     * Starts keeping history of received debug data with given capacity [samples],
+     * previous history is discarded. Capacity 0 disables the history.
+     */
+    public void setTelemetryHistoryCapacity(int capacity) {
+        telemetryHistory = capacity > 0 ? new TelemetryHistory(capacity) : null;
     }
 
+    /**
+     * Returns history of debug data, null when it is disabled (default).
+     */
+    public TelemetryHistory getTelemetryHistory() {
+        return telemetryHistory;
+    }
+
+    /**
+     * Registers listener notified about every event.
+     */
+    public Subscription registerListener(UavManagerListener listener) {
+        return register(new ListenerQueue(listener, EnumSet.allOf(UavEvent.Type.class), false, 0));
+    }
+
+    /**
+     * Registers listener notified only about events of given types.
+     * Listener can be registered once, next registrations return the existing subscription.
+     */
+    public Subscription subscribe(UavManagerListener listener, UavEvent.Type... types) {
+        return register(new ListenerQueue(listener, toSet(types), false, 0));
+    }
+
+    /**
+     * Registers listener, that receives only the latest telemetry (see UavEvent.isTelemetry):
+     * telemetry event is dropped when previous one of the same type was not delivered yet,
+     * as listener reads actual state from UavManager anyway. Telemetry events are delivered
+     * at most with given frequency [Hz] for each type, 0 for unlimited.
+     * Other events are never conflated.
+     */
+    public Subscription registerConflatingListener(UavManagerListener listener, double maxTelemetryFreq) {
+        return subscribeConflating(listener, maxTelemetryFreq, UavEvent.Type.values());
+    }
+
+    /**
+     * Registers conflating listener (see registerConflatingListener) notified only about events of given types.
+     */
+    public Subscription subscribeConflating(UavManagerListener listener, double maxTelemetryFreq,
+                                            UavEvent.Type... types) {
+        return register(new ListenerQueue(listener, toSet(types), true,
+                maxTelemetryFreq > 0.0 ? (long) (1e9 / maxTelemetryFreq) : 0));
+    }
+
+    /**
+     * Unregisters listener, events waiting in its queue are not delivered.
+     */
     public void unregisterListener(UavManagerListener listener) {
-        listeners.remove(listener);
+        unregister(findQueue(listener));
+    }
+
+    /**
+     * Number of telemetry events dropped because queue of listener was full,
+     * 0 for not registered listener.
+     */
+    public long getDroppedEventsCount(UavManagerListener listener) {
+        final ListenerQueue queue = findQueue(listener);
+        return queue != null ? queue.getDroppedCount() : 0;
+    }
+
+    /**
+     * Number of telemetry events conflated for conflating listener, 0 for not registered listener.
+     */
+    public long getConflatedEventsCount(UavManagerListener listener) {
+        final ListenerQueue queue = findQueue(listener);
+        return queue != null ? queue.getConflatedCount() : 0;
+    }
+
+    private Subscription register(ListenerQueue queue) {
+        synchronized (listeners) {
+            final ListenerQueue existing = findQueue(queue.listener);
+            if (existing != null) {
+                logger.debug("Listener already registered");
+                return existing;
+            }
+            listeners.add(queue);
+            subscribers = buildSubscribers();
+            return queue;
+        }
+    }
+
+    private void unregister(ListenerQueue queue) {
+        if (queue == null) {
+            return;
+        }
+        synchronized (listeners) {
+            queue.removed = true;
+            if (listeners.remove(queue)) {
+                subscribers = buildSubscribers();
+            }
+        }
+    }
+
+    private EnumMap<UavEvent.Type, ListenerQueue[]> buildSubscribers() {
+        final EnumMap<UavEvent.Type, ListenerQueue[]> result = new EnumMap<>(UavEvent.Type.class);
+        for (UavEvent.Type type : UavEvent.Type.values()) {
+            int count = 0;
+            final ListenerQueue[] queues = new ListenerQueue[listeners.size()];
+            for (ListenerQueue queue : listeners) {
+                if (queue.types.contains(type)) {
+                    queues[count++] = queue;
+                }
+            }
+            result.put(type, Arrays.copyOf(queues, count));
+        }
+        return result;
+    }
+
+    private static EnumSet<UavEvent.Type> toSet(UavEvent.Type... types) {
+        final EnumSet<UavEvent.Type> result = EnumSet.noneOf(UavEvent.Type.class);
+        result.addAll(Arrays.asList(types));
+        return result;
+    }
+
+    private ListenerQueue findQueue(UavManagerListener listener) {
+        for (ListenerQueue queue : listeners) {
+            if (queue.listener == listener) {
+                return queue;
+            }
+        }
+        return null;
     }
 
     public void connect(CommInterface commInterface) {
         commHandler.connect(commInterface);
     }
 
+    /**
+     * Queue of events of single listener, drained by event executor.
+     * Conflating queue keeps telemetry only as pending flags, one for each event type.
+     */
+    private class ListenerQueue implements Runnable, Subscription {
+        private final UavManagerListener listener;
+        private final EnumSet<UavEvent.Type> types;
+        private final boolean conflating;
+        private final long minTelemetryInterval; // [ns]
+
+        // guarded by this
+        private final ArrayDeque<UavEvent> events = new ArrayDeque<>();
+        private final boolean[] pendingTelemetry = new boolean[UavEvent.Type.values().length];
+        private final long[] lastTelemetry = new long[UavEvent.Type.values().length];
+        private boolean scheduled;
+        private boolean wakeupScheduled;
+        private long droppedCount;
+        private long conflatedCount;
+
+        private volatile boolean removed;
+
+        private final Runnable wakeup = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ListenerQueue.this) {
+                    wakeupScheduled = false;
+                    if (scheduled) {
+                        return;
+                    }
+                    scheduled = true;
+                }
+                submit();
+            }
+        };
+
+        ListenerQueue(UavManagerListener listener, EnumSet<UavEvent.Type> types,
+                      boolean conflating, long minTelemetryInterval) {
+            this.listener = listener;
+            this.types = types;
+            this.conflating = conflating;
+            this.minTelemetryInterval = minTelemetryInterval;
+            for (int i = 0; i < lastTelemetry.length; i++) {
+                lastTelemetry[i] = Long.MIN_VALUE / 2;
+            }
+        }
+
+        void offer(UavEvent event) {
+            synchronized (this) {
+                if (conflating && event.isTelemetry()) {
+                    final int index = event.getType().ordinal();
+                    if (pendingTelemetry[index]) {
+                        conflatedCount++;
+                        return;
+                    }
+                    pendingTelemetry[index] = true;
+                } else {
+                    if (events.size() >= LISTENER_QUEUE_CAPACITY) {
+                        dropOldestTelemetry();
+                    }
+                    events.add(event);
+                }
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            submit();
+        }
+
+        @Override
+        public void close() {
+            unregister(this);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return removed;
+        }
+
+        @Override
+        public EnumSet<UavEvent.Type> getTypes() {
+            return EnumSet.copyOf(types);
+        }
+
+        synchronized long getDroppedCount() {
+            return droppedCount;
+        }
+
+        synchronized long getConflatedCount() {
+            return conflatedCount;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < LISTENER_BATCH_SIZE; i++) {
+                final UavEvent event;
+                synchronized (this) {
+                    event = events.poll();
+                }
+                if (event == null) {
+                    break;
+                }
+                deliver(event);
+            }
+            if (conflating) {
+                deliverTelemetry();
+            }
+            final long wait;
+            synchronized (this) {
+                wait = events.isEmpty() ? getTelemetryWait() : 0;
+                if (wait != 0) {
+                    scheduled = false;
+                    if (wait < 0 || wakeupScheduled) {
+                        return;
+                    }
+                    wakeupScheduled = true;
+                }
+            }
+            if (wait > 0) {
+                // telemetry waits for rate limit of the listener
+                commHandler.getScheduler().schedule(wakeup, wait, 0);
+            } else {
+                submit();
+            }
+        }
+
+        /**
+         * Critical events are never dropped, queue may exceed capacity when there is no telemetry.
+         */
+        private void dropOldestTelemetry() {
+            final Iterator<UavEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isTelemetry()) {
+                    iterator.remove();
+                    if (droppedCount++ == 0) {
+                        logger.warn("Listener does not keep up with events, dropping oldest telemetry");
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void deliverTelemetry() {
+            final UavEvent.Type[] types = UavEvent.Type.values();
+            for (int i = 0; i < types.length; i++) {
+                synchronized (this) {
+                    if (!pendingTelemetry[i]) {
+                        continue;
+                    }
+                    final long now = commHandler.getScheduler().nanoTime();
+                    if (now - lastTelemetry[i] < minTelemetryInterval) {
+                        continue;
+                    }
+                    pendingTelemetry[i] = false;
+                    lastTelemetry[i] = now;
+                }
+                deliver(new UavEvent(types[i]));
+            }
+        }
+
+        /**
+         * Returns time to the nearest pending telemetry delivery [ns], -1 when nothing is pending.
+         */
+        private long getTelemetryWait() {
+            long result = -1;
+            if (!conflating) {
+                return result;
+            }
+            final long now = commHandler.getScheduler().nanoTime();
+            for (int i = 0; i < pendingTelemetry.length; i++) {
+                if (pendingTelemetry[i]) {
+                    final long wait = Math.max(minTelemetryInterval - (now - lastTelemetry[i]), 0);
+                    result = result < 0 ? wait : Math.min(result, wait);
+                }
+            }
+            return result;
+        }
+
+        private void deliver(UavEvent event) {
+            if (removed) {
+                return;
+            }
+            try {
+                listener.handleUavEvent(event, UavManager.this);
+            } catch (RuntimeException e) {
+                logger.warn("UavManager listener failed", e);
+            }
+        }
+
+        private void submit() {
+            try {
+                eventExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                logger.info("Event executor rejected events: " + e.getMessage());
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Debug data decoded for version of telemetry state, never modified after it is published.
+     */
+    private static class DebugDataCopy {
+        private final DebugData debugData;
+        private final long version;
+
+        DebugDataCopy(DebugData debugData, long version) {
+            this.debugData = debugData;
+            this.version = version;
+        }
+    }
+
     public interface UavManagerListener {
         void handleUavEvent(UavEvent event, UavManager uavManager);
     }
 
+    /**
+     * Registration of listener, closing it unregisters the listener.
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+
+        boolean isClosed();
+
+        EnumSet<UavEvent.Type> getTypes();
+    }
+
     public interface ControlDataSource {
         ControlData getControlData();
     }
@@ -4,21 +4,26 @@ import com.skydive.sdk.data.*;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
 import com.skydive.sdk.events.SignalPayloadEvent;
+import com.skydive.sdk.events.SignalPayloadIncompleteEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Bartosz Nawrot on 2017-01-03.
  */
-public class UavSimulator implements CommInterface.CommInterfaceListener,
+public class UavSimulator implements CommInterface.ByteBufferListener,
         CommDispatcher.CommDispatcherListener {
 
     private static Logger logger = LoggerFactory.getLogger(UavSimulator.class);
 
     private CommInterface commInterface;
     private CommDispatcher dispatcher;
+    private final CommScheduler scheduler;
 
     private State state;
     private FlightLoopStage flightLoopStage;
@@ -31,6 +36,13 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
 
     private DebugData debugDataToSend = getStartDebugData();
 
+    // packets of last sent SignalPayloadData, kept for retransmission
+    private final CommPacketizer packetizer = new CommPacketizer();
+
+    // delayed steps of actual session, cancelled when session ends
+    private final List<CommScheduler.Handle> delayedSteps = new ArrayList<>();
+    private int session;
+
     private int sendingProcedureFails;
     private int uploadFails;
     private int uploadRouteFails;
@@ -69,17 +81,69 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
         CALIBRATION_ACK
     }
 
+    private final CommTask debugTask;
+    private final CommTask baseSetupTask;
+
     public UavSimulator(CommInterface commInterface) {
+        this(commInterface, CommScheduler.getDefault());
+    }
+
+    /**
+     * @param scheduler clock and scheduler of simulator tasks and delays, see VirtualScheduler
+     */
+    public UavSimulator(CommInterface commInterface, CommScheduler scheduler) {
         this.commInterface = commInterface;
-        this.dispatcher = new CommDispatcher(this);
+        this.dispatcher = new CommDispatcher(this, scheduler);
+        this.scheduler = scheduler;
 
         this.state = State.IDLE;
+
+        debugTask = new CommTask(25, scheduler) {
+            @Override
+            protected String getTaskName() {
+                return "debug_task";
+            }
+
+            @Override
+            protected void task() {
+                simulateSensors();
+                DebugData debugData = getDebugDataToSend();
+                send(debugData.getMessage());
+                logger.debug("Debug: " + debugData.toString());
+            }
+        };
+
+        baseSetupTask = new CommTask( 1.0 / 5, scheduler) {
+            @Override
+            protected String getTaskName() {
+                return "base_setup_task";
+            }
+
+            @Override
+            protected void task() {
+                if (state == State.FLIGHT_LOOP && flightLoopStage == FlightLoopStage.RUNNING) {
+                    AutopilotData data = new AutopilotData();
+                    DebugData actualDebug = getDebugDataToSend();
+                    data.setLatitude(actualDebug.getLatitude());
+                    data.setLongitude(actualDebug.getLongitude());
+                    data.setAbsoluteAltitude(actualDebug.getAbsoluteAltitude());
+                    data.setRelativeAltitude(actualDebug.getRelativeAltitude());
+                    data.setType(AutopilotData.Type.BASE);
+                    logger.info("Sending base position after IDLE mode " + data.toString());
+                    send(data.getMessage());
+                }
+                stop();
+            }
+        };
     }
 
     @Override
     public void handleCommEvent(CommEvent event) {
         try {
             logger.debug("UavSimulator : handling event : " + event.toString() + " @ " + state.toString());
+            if (handlePacketsRetransmission(event)) {
+                return;
+            }
             switch (state) {
                 case CONNECTING_APP_LOOP:
                     handleEventConnectingAppLoop(event);
@@ -131,8 +195,7 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                     logger.info("Who am I procedure started, responding with board type");
                     send(new SignalData(SignalData.Command.WHO_AM_I_VALUE, calibrationSettings.getBoardType().getValue()).getMessage());
                     // connection shutdown, wait for message to be delivered to application
-                    Thread.sleep(500);
-                    commInterface.disconnect();
+                    scheduleDisconnect(500);
                 } else {
                     throw new Exception("Unexpected message received");
                 }
@@ -142,11 +205,16 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                 if (event.matchSignalData(new SignalData(SignalData.Command.PROTOCOL_VERSION, SignalData.Parameter.ACK))) {
                     logger.info("Protocol version accepted, staring calibration procedure");
                     send(new SignalData(SignalData.Command.START_CMD, SignalData.Parameter.ACK).getMessage());
-                    // simulate calibration process (sleep 0.5s)
-                    Thread.sleep(500);
-                    send(new SignalData(SignalData.Command.CALIBRATION_SETTINGS, SignalData.Parameter.READY).getMessage());
-                    startSignalPayloadSending(calibrationSettings);
-                    connectionStage = ConnectionStage.CALIBRATION_ACK;
+                    // simulate calibration process (0.5s)
+                    schedule(500, new Runnable() {
+                        @Override
+                        public void run() {
+                            // stage is changed first, as response can be received before sending returns
+                            connectionStage = ConnectionStage.CALIBRATION_ACK;
+                            send(new SignalData(SignalData.Command.CALIBRATION_SETTINGS, SignalData.Parameter.READY).getMessage());
+                            startSignalPayloadSending(calibrationSettings);
+                        }
+                    });
                 } else {
 
                 }
@@ -197,8 +265,7 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                     debugTask.stop();
                     send(new SignalData(SignalData.Command.APP_LOOP, SignalData.Parameter.BREAK_ACK).getMessage());
                     // wait for message to be delivered to application
-                    Thread.sleep(500);
-                    commInterface.disconnect();
+                    scheduleDisconnect(500);
 
                 } else if (event.matchSignalData(new SignalData(
                         SignalData.Command.FLIGHT_LOOP, SignalData.Parameter.START))) {
@@ -215,10 +282,14 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                     debugTask.stop();
                     state = State.CALIBRATE_ACCEL;
                     send(new SignalData(SignalData.Command.CALIBRATE_ACCEL, SignalData.Parameter.ACK).getMessage());
-                    // simulate calibration process (sleep 0.5s)
-                    Thread.sleep(500);
-                    send(new SignalData(SignalData.Command.CALIBRATE_ACCEL, SignalData.Parameter.DONE).getMessage());
-                    startSignalPayloadSending(calibrationSettings);
+                    // simulate calibration process (0.5s)
+                    schedule(500, new Runnable() {
+                        @Override
+                        public void run() {
+                            send(new SignalData(SignalData.Command.CALIBRATE_ACCEL, SignalData.Parameter.DONE).getMessage());
+                            startSignalPayloadSending(calibrationSettings);
+                        }
+                    });
 
                 } else if (event.matchSignalData(new SignalData(
                         SignalData.Command.CALIBRATE_MAGNET, SignalData.Parameter.START))) {
@@ -270,8 +341,7 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                     logger.info("Connection broken, rest simulator!");
                     debugTask.stop();
                     send(new SignalData(SignalData.Command.SYSTEM_RESET, SignalData.Parameter.ACK).getMessage());
-                    Thread.sleep(200);
-                    commInterface.disconnect();
+                    scheduleDisconnect(200);
 
                 } else {
                     throw new Exception("Unexpected SignalData received in app loop: " + signalMsg);
@@ -373,11 +443,15 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
                     debugTask.start();
                 } else if (event.matchSignalData(new SignalData(SignalData.Command.CALIBRATE_MAGNET, SignalData.Parameter.DONE))) {
                     logger.info("Magnetometer calibration done");
-                    // simulate calibration computation (sleep 0.5s)
-                    Thread.sleep(100);
-                    send(new SignalData(SignalData.Command.CALIBRATE_MAGNET, SignalData.Parameter.DONE).getMessage());
-                    startSignalPayloadSending(calibrationSettings);
-                    magnetometerState = MagnetometerStage.CALIBRATION_ACK;
+                    // simulate calibration computation (0.1s)
+                    schedule(100, new Runnable() {
+                        @Override
+                        public void run() {
+                            magnetometerState = MagnetometerStage.CALIBRATION_ACK;
+                            send(new SignalData(SignalData.Command.CALIBRATE_MAGNET, SignalData.Parameter.DONE).getMessage());
+                            startSignalPayloadSending(calibrationSettings);
+                        }
+                    });
                 } else {
                     logger.info("Calibration failed");
                     throw new Exception("Bad command received in magnetometer calibration");
@@ -483,9 +557,74 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
 
     private void send(final SignalPayloadData data) {
         // TODO enable java 8 features in Android studio or exclude this file from build in Android
-        for (CommMessage m : data.getMessages()) {
-            send(m);
+        final int packetsCount = packetizer.encode(data.getDataType(), data.serialize());
+        commInterface.send(packetizer.getPackets(0, packetsCount), 0, packetsCount);
+    }
+
+    /**
+     * handlePacketsRetransmission - selective repeat of SignalPayloadData packets in both directions,
+     * resends packets requested by application and requests packets missing in uploaded data
+     * returns true if event was consumed
+     */
+    private boolean handlePacketsRetransmission(CommEvent event) {
+        if (event.getType() == CommEvent.EventType.SIGNAL_PAYLOAD_INCOMPLETE) {
+            for (SignalData request : ((SignalPayloadIncompleteEvent) event).getRetransmissionRequests()) {
+                send(request.getMessage());
+            }
+            return true;
+        }
+        if (event.getType() == CommEvent.EventType.MESSAGE_RECEIVED
+                && ((MessageEvent) event).getMessageType() == CommMessage.MessageType.SIGNAL) {
+            SignalData request = new SignalData(((MessageEvent) event).getMessage());
+            if (request.getCommand() == SignalData.Command.PACKETS_RETRANSMISSION) {
+                logger.info("Retransmitting " + request.getPacketsCount() + " packets from " + request.getFirstPacket());
+                final int first = Math.min(request.getFirstPacket(), packetizer.getPacketsCount());
+                final int count = Math.min(request.getPacketsCount(), packetizer.getPacketsCount() - first);
+                commInterface.send(packetizer.getPackets(first, count), first, count);
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Executes task after delay [ms], receiving thread is not blocked meanwhile.
+     * Task is dropped when session ends before the delay, see cancelDelayedSteps.
+     */
+    private void schedule(long delay, final Runnable task) {
+        synchronized (delayedSteps) {
+            final int stepSession = session;
+            delayedSteps.add(scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (delayedSteps) {
+                        if (session != stepSession) {
+                            return;
+                        }
+                    }
+                    task.run();
+                }
+            }, delay * 1000000L, 0));
+        }
+    }
+
+    private void cancelDelayedSteps() {
+        synchronized (delayedSteps) {
+            session++;
+            for (CommScheduler.Handle handle : delayedSteps) {
+                handle.cancel();
+            }
+            delayedSteps.clear();
+        }
+    }
+
+    private void scheduleDisconnect(long delay) {
+        schedule(delay, new Runnable() {
+            @Override
+            public void run() {
+                commInterface.disconnect();
+            }
+        });
     }
 
     private void startSignalPayloadSending(final SignalPayloadData data) {
@@ -650,6 +789,7 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
     @Override
     public void onConnected() {
         logger.info("UavSimulator : onConnected");
+        cancelDelayedSteps();
         dispatcher.reset();
         state = State.CONNECTING_APP_LOOP;
         connectionStage = ConnectionStage.INITIAL_COMMAND;
@@ -658,6 +798,7 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
     @Override
     public void onDisconnected() {
         logger.info("UavSimulator : onDisconnected");
+        cancelDelayedSteps();
         debugTask.stop();
         baseSetupTask.stop();
     }
@@ -672,41 +813,8 @@ public class UavSimulator implements CommInterface.CommInterfaceListener,
         dispatcher.proceedReceiving(data, dataSize);
     }
 
-    private CommTask debugTask = new CommTask(25) {
-        @Override
-        protected String getTaskName() {
-            return "debug_task";
-        }
-
-        @Override
-        protected void task() {
-            simulateSensors();
-            DebugData debugData = getDebugDataToSend();
-            send(debugData.getMessage());
-            logger.debug("Debug: " + debugData.toString());
-        }
-    };
-
-    private CommTask baseSetupTask = new CommTask( 1.0 / 5 ) {
-        @Override
-        protected String getTaskName() {
-            return "base_setup_task";
-        }
-
-        @Override
-        protected void task() {
-            if (state == State.FLIGHT_LOOP && flightLoopStage == FlightLoopStage.RUNNING) {
-                AutopilotData data = new AutopilotData();
-                DebugData actualDebug = getDebugDataToSend();
-                data.setLatitude(actualDebug.getLatitude());
-                data.setLongitude(actualDebug.getLongitude());
-                data.setAbsoluteAltitude(actualDebug.getAbsoluteAltitude());
-                data.setRelativeAltitude(actualDebug.getRelativeAltitude());
-                data.setType(AutopilotData.Type.BASE);
-                logger.info("Sending base position after IDLE mode " + data.toString());
-                send(data.getMessage());
-            }
-            stop();
-        }
-    };
-}
\ No newline at end of file
+    @Override
+    public void onDataReceived(final ByteBuffer data) {
+        dispatcher.proceedReceiving(data);
+    }
+}
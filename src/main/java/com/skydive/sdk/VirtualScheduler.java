@@ -0,0 +1,244 @@
+package com.skydive.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * CommScheduler running in virtual time, for deterministic simulations faster than real time.
+ * Scheduler has no threads, tasks are executed by the thread that advances time
+ * (see runNext, advance, advanceUntil), in order of deadlines and tasks with the same deadline
+ * in order of scheduling. Time jumps directly to the next deadline, so idle periods cost nothing.
+ * Together with EmulatedLink in virtual mode whole UavManager and UavSimulator session runs
+ * on single thread and is reproducible. Scheduler is not thread safe, it has to be used
+ * only by the thread advancing it and by the tasks.
+ */
+public class VirtualScheduler extends CommScheduler {
+
+    private static Logger logger = LoggerFactory.getLogger(VirtualScheduler.class);
+
+    private final PriorityQueue<VirtualHandle> queue = new PriorityQueue<>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            schedule(command, 0, 0);
+        }
+    };
+
+    private long time; // [ns]
+    private long sequence;
+    private int tasksCount;
+    private long executedCount;
+
+    public VirtualScheduler() {
+        this(0);
+    }
+
+    /**
+     * @param startTime initial virtual time [ns]
+     */
+    public VirtualScheduler(long startTime) {
+        this.time = startTime;
+    }
+
+    @Override
+    public long nanoTime() {
+        return time;
+    }
+
+    @Override
+    public Handle schedule(Runnable task, long delay, long period) {
+        VirtualHandle handle = new VirtualHandle(task, time + Math.max(delay, 0), period);
+        tasksCount++;
+        enqueue(handle);
+        return handle;
+    }
+
+    /**
+     * Executes work as tasks scheduled at actual virtual time.
+     */
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * The same as getExecutor, work blocking in virtual time would block the whole simulation.
+     */
+    @Override
+    public Executor getBlockingExecutor() {
+        return executor;
+    }
+
+    @Override
+    public int getTasksCount() {
+        return tasksCount;
+    }
+
+    /**
+     * Drops all scheduled tasks.
+     */
+    @Override
+    public void shutdown() {
+        VirtualHandle handle;
+        while ((handle = queue.poll()) != null) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * Number of executions of all tasks.
+     */
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Advances time to the nearest deadline and executes the task.
+     * Returns false when there is no scheduled task.
+     */
+    public boolean runNext() {
+        final VirtualHandle handle = peekActive();
+        if (handle == null) {
+            return false;
+        }
+        queue.poll();
+        time = Math.max(time, handle.deadline);
+        execute(handle);
+        return true;
+    }
+
+    /**
+     * Advances time by duration [ns], executing all tasks due meanwhile.
+     */
+    public void advance(long duration) {
+        advanceTo(time + duration);
+    }
+
+    /**
+     * Advances time to given point [ns], executing all tasks due meanwhile.
+     */
+    public void advanceTo(long target) {
+        VirtualHandle handle;
+        while ((handle = peekActive()) != null && handle.deadline <= target) {
+            runNext();
+        }
+        time = Math.max(time, target);
+    }
+
+    /**
+     * Executes tasks until condition is met, but no longer than timeout [ns] of virtual time.
+     * Condition is checked before each task. Returns true when condition was met.
+     */
+    public boolean advanceUntil(Condition condition, long timeout) {
+        final long target = time + timeout;
+        VirtualHandle handle;
+        while (!condition.isMet()) {
+            handle = peekActive();
+            if (handle == null || handle.deadline > target) {
+                time = Math.max(time, target);
+                return condition.isMet();
+            }
+            runNext();
+        }
+        return true;
+    }
+
+    private VirtualHandle peekActive() {
+        VirtualHandle handle;
+        while ((handle = queue.peek()) != null && handle.cancelled) {
+            queue.poll();
+        }
+        return handle;
+    }
+
+    private void enqueue(VirtualHandle handle) {
+        handle.sequence = sequence++;
+        queue.add(handle);
+    }
+
+    private void execute(VirtualHandle handle) {
+        executedCount++;
+        try {
+            handle.task.run();
+        } catch (RuntimeException e) {
+            logger.warn("Scheduled task failed", e);
+        }
+        if (handle.cancelled) {
+            return;
+        }
+        final long period = handle.period;
+        if (period <= 0) {
+            handle.release();
+            return;
+        }
+        handle.deadline += period;
+        enqueue(handle);
+    }
+
+    public interface Condition {
+        boolean isMet();
+    }
+
+    private class VirtualHandle implements Handle, Comparable<VirtualHandle> {
+        private final Runnable task;
+        private long deadline;
+        private long period;
+        private long sequence;
+        private boolean cancelled;
+        private boolean released;
+
+        private VirtualHandle(Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void setPeriod(long period) {
+            this.period = period;
+        }
+
+        @Override
+        public long getPeriod() {
+            return period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            release();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Virtual time is never late.
+         */
+        @Override
+        public long getMissedCount() {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(VirtualHandle other) {
+            if (deadline != other.deadline) {
+                return deadline < other.deadline ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                tasksCount--;
+            }
+        }
+    }
+}
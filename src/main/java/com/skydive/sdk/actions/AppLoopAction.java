@@ -2,7 +2,6 @@ package com.skydive.sdk.actions;
 
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.CommMessage;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
 import org.slf4j.Logger;
@@ -42,7 +41,7 @@ public class AppLoopAction extends CommHandlerAction {
 
             if (messageEvent.getMessageType() == CommMessage.MessageType.CONTROL) {
                 // debug data received
-                commHandler.getUavManager().setDebugData(new DebugData(messageEvent.getMessage()));
+                commHandler.getUavManager().setDebugData(messageEvent.getMessage());
             } else {
                 logger.warn("Unexpected massage received: {}", messageEvent.toString());
             }
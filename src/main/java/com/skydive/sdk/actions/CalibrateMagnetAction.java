@@ -3,7 +3,6 @@ package com.skydive.sdk.actions;
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.UavEvent;
 import com.skydive.sdk.data.CalibrationSettings;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
@@ -63,7 +62,7 @@ public class CalibrateMagnetAction extends CommHandlerAction {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
                             logger.info("DebugData received when waiting for ACK on initial calibrate magnetometer command");
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
 
                         case SIGNAL:
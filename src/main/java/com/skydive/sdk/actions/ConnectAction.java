@@ -40,7 +40,7 @@ public class ConnectAction extends CommHandlerAction {
         state = ConnectState.IDLE;
         connectionProcedureDone = false;
 
-        connectionTimeoutTask = new CommTask(1000.0 / CONNECTION_TIMEOUT) {
+        connectionTimeoutTask = new CommTask(1000.0 / CONNECTION_TIMEOUT, commHandler.getScheduler()) {
             @Override
             protected String getTaskName() {
                 return "connection_timeout_task";
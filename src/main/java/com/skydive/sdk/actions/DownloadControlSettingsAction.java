@@ -2,7 +2,6 @@ package com.skydive.sdk.actions;
 
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.data.ControlSettings;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.events.CommEvent;
 import com.skydive.sdk.events.MessageEvent;
@@ -57,7 +56,7 @@ public class DownloadControlSettingsAction extends CommHandlerAction {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
                             logger.info("DebugData received when waiting for ACK on initial download control settings command");
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
 
                         case SIGNAL:
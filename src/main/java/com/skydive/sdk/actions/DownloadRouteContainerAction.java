@@ -2,7 +2,6 @@ package com.skydive.sdk.actions;
 
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.UavEvent;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.data.RouteContainer;
 import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.events.CommEvent;
@@ -53,7 +52,7 @@ public class DownloadRouteContainerAction extends CommHandlerAction {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
                             logger.info("DebugData received when waiting for ACK on RouteContainer download procedure");
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
                         case SIGNAL:
                             if (event.matchSignalData(new SignalData(SignalData.Command.DOWNLOAD_ROUTE, SignalData.Parameter.ACK))) {
@@ -3,7 +3,6 @@ package com.skydive.sdk.actions;
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.UavEvent;
 import com.skydive.sdk.data.ControlSettings;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.data.RouteContainer;
 import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.events.CommEvent;
@@ -64,7 +63,7 @@ public class FlightLoopAction extends CommHandlerAction {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
                             logger.info("DebugData received when waiting for ACK on initial flight loop command");
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
 
                         case SIGNAL:
@@ -163,7 +162,7 @@ public class FlightLoopAction extends CommHandlerAction {
                 if (event.getType() == CommEvent.EventType.MESSAGE_RECEIVED) {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
 
                         case SIGNAL:
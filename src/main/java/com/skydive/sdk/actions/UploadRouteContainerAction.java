@@ -2,7 +2,6 @@ package com.skydive.sdk.actions;
 
 import com.skydive.sdk.CommHandler;
 import com.skydive.sdk.UavEvent;
-import com.skydive.sdk.data.DebugData;
 import com.skydive.sdk.data.SignalData;
 import com.skydive.sdk.data.SignalPayloadData;
 import com.skydive.sdk.events.CommEvent;
@@ -57,7 +56,7 @@ public class UploadRouteContainerAction extends CommHandlerAction {
                     switch (((MessageEvent) event).getMessageType()) {
                         case CONTROL:
                             logger.info("DebugData received when waiting for ACK on RouteContainer upload procedure");
-                            commHandler.getUavManager().setDebugData(new DebugData(((MessageEvent) event).getMessage()));
+                            commHandler.getUavManager().setDebugData(((MessageEvent) event).getMessage());
                             break;
                         case SIGNAL:
                             if (event.matchSignalData(new SignalData(SignalData.Command.UPLOAD_ROUTE, SignalData.Parameter.ACK))) {
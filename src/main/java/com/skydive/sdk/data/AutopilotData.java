@@ -2,8 +2,7 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.List;
 
 /**
  * Created by Bartosz Nawrot on 2016-08-22.
@@ -29,14 +28,43 @@ public class AutopilotData {
     }
 
     public AutopilotData(CommMessage message) {
-        ByteBuffer buffer = ByteBuffer.wrap(message.getPayload());
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        this.latitude = buffer.getDouble();
-        this.longitude = buffer.getDouble();
-        this.absoluteAltitude = buffer.getFloat();
-        this.relativeAltitude = buffer.getFloat();
-        this.type = Type.getType(buffer.getInt());
-        this.flags = buffer.getInt();
+        decode(message.getPayload(), 0);
+    }
+
+    /**
+     * Decodes data from payload starting at offset of src, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        this.latitude = WireFormat.getDouble(src, offset + Layout.LATITUDE);
+        this.longitude = WireFormat.getDouble(src, offset + Layout.LONGITUDE);
+        this.absoluteAltitude = WireFormat.getFloat(src, offset + Layout.ABSOLUTE_ALTITUDE);
+        this.relativeAltitude = WireFormat.getFloat(src, offset + Layout.RELATIVE_ALTITUDE);
+        this.type = Type.getType(WireFormat.getInt(src, offset + Layout.TYPE));
+        this.flags = WireFormat.getInt(src, offset + Layout.FLAGS);
+    }
+
+    /**
+     * Encodes data to dst starting at offset, see Layout.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putDouble(dst, offset + Layout.LATITUDE, latitude);
+        WireFormat.putDouble(dst, offset + Layout.LONGITUDE, longitude);
+        WireFormat.putFloat(dst, offset + Layout.ABSOLUTE_ALTITUDE, absoluteAltitude);
+        WireFormat.putFloat(dst, offset + Layout.RELATIVE_ALTITUDE, relativeAltitude);
+        WireFormat.putInt(dst, offset + Layout.TYPE, type.getValue());
+        WireFormat.putInt(dst, offset + Layout.FLAGS, flags);
+    }
+
+    /**
+     * Copies state of given data without allocation.
+     */
+    public void copyFrom(AutopilotData autopilotData) {
+        this.latitude = autopilotData.latitude;
+        this.longitude = autopilotData.longitude;
+        this.absoluteAltitude = autopilotData.absoluteAltitude;
+        this.relativeAltitude = autopilotData.relativeAltitude;
+        this.type = autopilotData.type;
+        this.flags = autopilotData.flags;
     }
 
     public double getLatitude() {
@@ -94,15 +122,9 @@ public class AutopilotData {
     }
 
     public CommMessage getMessage() {
-        ByteBuffer buffer = ByteBuffer.allocate(CommMessage.getPayloadSizeByType(CommMessage.MessageType.AUTOPILOT));
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putDouble(getLatitude());
-        buffer.putDouble(getLongitude());
-        buffer.putFloat(getAbsoluteAltitude());
-        buffer.putFloat(getRelativeAltitude());
-        buffer.putInt(getType().getValue());
-        buffer.putInt(getFlags());
-        return new CommMessage(CommMessage.MessageType.AUTOPILOT, buffer.array());
+        byte[] payload = new byte[CommMessage.getPayloadSizeByType(CommMessage.MessageType.AUTOPILOT)];
+        encode(payload, 0);
+        return new CommMessage(CommMessage.MessageType.AUTOPILOT, payload);
     }
 
     public boolean isEqual(AutopilotData autopilotData) {
@@ -114,6 +136,30 @@ public class AutopilotData {
                 && this.flags == autopilotData.flags;
     }
 
+    /**
+     * Offsets of fields in payload of AUTOPILOT message.
+     */
+    public static final class Layout {
+        public static final int LATITUDE = 0;
+        public static final int LONGITUDE = LATITUDE + WireFormat.DOUBLE;
+        public static final int ABSOLUTE_ALTITUDE = LONGITUDE + WireFormat.DOUBLE;
+        public static final int RELATIVE_ALTITUDE = ABSOLUTE_ALTITUDE + WireFormat.FLOAT;
+        public static final int TYPE = RELATIVE_ALTITUDE + WireFormat.FLOAT;
+        public static final int FLAGS = TYPE + WireFormat.INT;
+        public static final int SIZE = FLAGS + WireFormat.INT;
+
+        public static final List<WireFormat.Field> FIELDS = WireFormat.fields(
+                new WireFormat.Field("latitude", LATITUDE, WireFormat.Type.F64),
+                new WireFormat.Field("longitude", LONGITUDE, WireFormat.Type.F64),
+                new WireFormat.Field("absolute_altitude", ABSOLUTE_ALTITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("relative_altitude", RELATIVE_ALTITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("type", TYPE, WireFormat.Type.I32),
+                new WireFormat.Field("flags", FLAGS, WireFormat.Type.I32));
+
+        private Layout() {
+        }
+    }
+
     public enum Type {
         INVALID_TYPE(1000),
         BASE(2000), // from UAV
@@ -2,10 +2,7 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
  * Created by Bartosz Nawrot on 2016-10-14.
@@ -58,35 +55,41 @@ public class CalibrationSettings implements SignalPayloadData {
         pwmInputLevels = new byte[8];
         flags = new Flags(32, 0);
 
-        ByteBuffer buffer = ByteBuffer.wrap(dataArray);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        for (int i = 0; i < gyroOffset.length; i++) {
-            gyroOffset[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < accelCalib.length; i++) {
-            accelCalib[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < magnetSoft.length; i++) {
-            magnetSoft[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < magnetHard.length; i++) {
-            magnetHard[i] = buffer.getFloat();
-        }
-
-        altimeterSetting = buffer.getFloat();
-        temperatureSetting = buffer.getFloat();
-
-        for (int i = 0; i < radioLevels.length; i++) {
-            radioLevels[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < pwmInputLevels.length; i++) {
-            pwmInputLevels[i] = buffer.get();
-        }
-
-        boardTypeValue = buffer.getInt();
-        flags.setFlags(buffer.getInt());
-        crcValue = buffer.getInt();
+        decode(dataArray, 0);
+    }
+
+    /**
+     * Decodes settings from src starting at offset, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        WireFormat.getFloats(src, offset + Layout.GYRO_OFFSET, gyroOffset);
+        WireFormat.getFloats(src, offset + Layout.ACCEL_CALIB, accelCalib);
+        WireFormat.getFloats(src, offset + Layout.MAGNET_SOFT, magnetSoft);
+        WireFormat.getFloats(src, offset + Layout.MAGNET_HARD, magnetHard);
+        altimeterSetting = WireFormat.getFloat(src, offset + Layout.ALTIMETER_SETTING);
+        temperatureSetting = WireFormat.getFloat(src, offset + Layout.TEMPERATURE_SETTING);
+        WireFormat.getFloats(src, offset + Layout.RADIO_LEVELS, radioLevels);
+        System.arraycopy(src, offset + Layout.PWM_INPUT_LEVELS, pwmInputLevels, 0, pwmInputLevels.length);
+        boardTypeValue = WireFormat.getInt(src, offset + Layout.BOARD_TYPE);
+        flags.setFlags(WireFormat.getInt(src, offset + Layout.FLAGS));
+        crcValue = WireFormat.getInt(src, offset + Layout.CRC);
+    }
+
+    /**
+     * Encodes settings to dst starting at offset, see Layout.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putFloats(dst, offset + Layout.GYRO_OFFSET, gyroOffset);
+        WireFormat.putFloats(dst, offset + Layout.ACCEL_CALIB, accelCalib);
+        WireFormat.putFloats(dst, offset + Layout.MAGNET_SOFT, magnetSoft);
+        WireFormat.putFloats(dst, offset + Layout.MAGNET_HARD, magnetHard);
+        WireFormat.putFloat(dst, offset + Layout.ALTIMETER_SETTING, altimeterSetting);
+        WireFormat.putFloat(dst, offset + Layout.TEMPERATURE_SETTING, temperatureSetting);
+        WireFormat.putFloats(dst, offset + Layout.RADIO_LEVELS, radioLevels);
+        System.arraycopy(pwmInputLevels, 0, dst, offset + Layout.PWM_INPUT_LEVELS, pwmInputLevels.length);
+        WireFormat.putInt(dst, offset + Layout.BOARD_TYPE, boardTypeValue);
+        WireFormat.putInt(dst, offset + Layout.FLAGS, flags.getFlags());
+        WireFormat.putInt(dst, offset + Layout.CRC, crcValue);
     }
 
     @Override
@@ -101,7 +104,7 @@ public class CalibrationSettings implements SignalPayloadData {
 
     private int computeCrc() {
         // compute CRC value from whole data, excluding last 4 bytes (CRC value)
-        return CommMessage.computeCrc32(Arrays.copyOfRange(serialize(), 0, getDataArraySize() - 4));
+        return CommMessage.computeCrc32(serialize(), getDataArraySize() - 4);
     }
 
     public boolean isValid() {
@@ -114,42 +117,34 @@ public class CalibrationSettings implements SignalPayloadData {
     }
 
     private int getDataArraySize() {
-        return 188;
+        return Layout.SIZE;
     }
 
     public byte[] serialize() {
         byte[] dataArray = new byte[getDataArraySize()];
-        ByteBuffer buffer = ByteBuffer.wrap(dataArray);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        for (float aGyroOffset : gyroOffset) {
-            buffer.putFloat(aGyroOffset);
-        }
-        for (float anAccelCalib : accelCalib) {
-            buffer.putFloat(anAccelCalib);
-        }
-        for (float aMagnetSoft : magnetSoft) {
-            buffer.putFloat(aMagnetSoft);
-        }
-        for (float aMagnetHard : magnetHard) {
-            buffer.putFloat(aMagnetHard);
-        }
-
-        buffer.putFloat(altimeterSetting);
-        buffer.putFloat(temperatureSetting);
+        encode(dataArray, 0);
+        return dataArray;
+    }
 
-        for (float radioLevel : radioLevels) {
-            buffer.putFloat(radioLevel);
-        }
-        for (byte pwmInputLevel : pwmInputLevels) {
-            buffer.put(pwmInputLevel);
+    /**
+     * Offsets of fields in data of CalibrationSettings, sent in packets of SIGNAL messages.
+     */
+    public static final class Layout {
+        public static final int GYRO_OFFSET = 0;
+        public static final int ACCEL_CALIB = GYRO_OFFSET + 3 * WireFormat.FLOAT;
+        public static final int MAGNET_SOFT = ACCEL_CALIB + 9 * WireFormat.FLOAT;
+        public static final int MAGNET_HARD = MAGNET_SOFT + 9 * WireFormat.FLOAT;
+        public static final int ALTIMETER_SETTING = MAGNET_HARD + 3 * WireFormat.FLOAT;
+        public static final int TEMPERATURE_SETTING = ALTIMETER_SETTING + WireFormat.FLOAT;
+        public static final int RADIO_LEVELS = TEMPERATURE_SETTING + WireFormat.FLOAT;
+        public static final int PWM_INPUT_LEVELS = RADIO_LEVELS + 16 * WireFormat.FLOAT;
+        public static final int BOARD_TYPE = PWM_INPUT_LEVELS + 8 * WireFormat.BYTE;
+        public static final int FLAGS = BOARD_TYPE + WireFormat.INT;
+        public static final int CRC = FLAGS + WireFormat.INT;
+        public static final int SIZE = CRC + WireFormat.INT;
+
+        private Layout() {
         }
-
-        buffer.putInt(boardTypeValue);
-        buffer.putInt(flags.getFlags());
-        buffer.putInt(crcValue);
-
-        return dataArray;
     }
 
     public void setGyroOffset(float[] gyroOffset) {
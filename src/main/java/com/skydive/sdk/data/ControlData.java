@@ -2,8 +2,7 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.List;
 
 /**
  * Created by Bartosz Nawrot on 2016-08-19.
@@ -48,15 +47,31 @@ public class ControlData {
     }
 
     public ControlData(byte[] data, int offset) {
-        ByteBuffer buffer = ByteBuffer.wrap(data, offset,
-                CommMessage.getPayloadSizeByType(CommMessage.MessageType.CONTROL));
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        this.roll = buffer.getFloat();
-        this.pitch = buffer.getFloat();
-        this.yaw = buffer.getFloat();
-        this.throttle = buffer.getFloat();
-        this.command = ControllerCommand.getControllerCommand(buffer.getShort());
-        this.mode = SolverMode.getSolverMode(buffer.get());
+        decode(data, offset);
+    }
+
+    /**
+     * Decodes data from payload starting at offset of src, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        this.roll = WireFormat.getFloat(src, offset + Layout.ROLL);
+        this.pitch = WireFormat.getFloat(src, offset + Layout.PITCH);
+        this.yaw = WireFormat.getFloat(src, offset + Layout.YAW);
+        this.throttle = WireFormat.getFloat(src, offset + Layout.THROTTLE);
+        this.command = ControllerCommand.getControllerCommand(WireFormat.getShort(src, offset + Layout.COMMAND));
+        this.mode = SolverMode.getSolverMode(WireFormat.getByte(src, offset + Layout.MODE));
+    }
+
+    /**
+     * Encodes data to dst starting at offset, bytes of payload after Layout.SIZE are not written.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putFloat(dst, offset + Layout.ROLL, roll);
+        WireFormat.putFloat(dst, offset + Layout.PITCH, pitch);
+        WireFormat.putFloat(dst, offset + Layout.YAW, yaw);
+        WireFormat.putFloat(dst, offset + Layout.THROTTLE, throttle);
+        WireFormat.putShort(dst, offset + Layout.COMMAND, command.getValue());
+        WireFormat.putByte(dst, offset + Layout.MODE, mode.getValue());
     }
 
     public float getRoll() {
@@ -134,14 +149,7 @@ public class ControlData {
 
     public void serialize(byte[] out) {
         if (out.length >= CommMessage.getPayloadSizeByType(CommMessage.MessageType.CONTROL)) {
-            ByteBuffer buffer = ByteBuffer.wrap(out);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            buffer.putFloat(getRoll());
-            buffer.putFloat(getPitch());
-            buffer.putFloat(getYaw());
-            buffer.putFloat(getThrottle());
-            buffer.putShort(getCommand().getValue());
-            buffer.put(getMode().getValue());
+            encode(out, 0);
         }
     }
 
@@ -153,6 +161,30 @@ public class ControlData {
         return CommMessage.getPayloadSizeByType(CommMessage.MessageType.CONTROL);
     }
 
+    /**
+     * Offsets of fields in payload of CONTROL message sent to drone.
+     */
+    public static final class Layout {
+        public static final int ROLL = 0;
+        public static final int PITCH = ROLL + WireFormat.FLOAT;
+        public static final int YAW = PITCH + WireFormat.FLOAT;
+        public static final int THROTTLE = YAW + WireFormat.FLOAT;
+        public static final int COMMAND = THROTTLE + WireFormat.FLOAT;
+        public static final int MODE = COMMAND + WireFormat.SHORT;
+        public static final int SIZE = MODE + WireFormat.BYTE;
+
+        public static final List<WireFormat.Field> FIELDS = WireFormat.fields(
+                new WireFormat.Field("roll", ROLL, WireFormat.Type.F32),
+                new WireFormat.Field("pitch", PITCH, WireFormat.Type.F32),
+                new WireFormat.Field("yaw", YAW, WireFormat.Type.F32),
+                new WireFormat.Field("throttle", THROTTLE, WireFormat.Type.F32),
+                new WireFormat.Field("command", COMMAND, WireFormat.Type.I16),
+                new WireFormat.Field("mode", MODE, WireFormat.Type.I8));
+
+        private Layout() {
+        }
+    }
+
     public enum ControllerCommand {
         // manual control
         MANUAL((short) 1000),
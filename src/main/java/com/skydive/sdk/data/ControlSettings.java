@@ -2,10 +2,7 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import static com.skydive.sdk.data.ControlSettings.StickMovementMode.COPTER;
 
@@ -121,52 +118,81 @@ public class ControlSettings implements SignalPayloadData {
         gpsSensorPosition = new float[3];
         flags = new Flags(32, 0);
 
-        ByteBuffer buffer = ByteBuffer.wrap(dataArray);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        uavType = buffer.getInt();
-        initialSolverMode = buffer.getInt();
-        manualThrottleMode = buffer.getInt();
-        autoLandingDescendRate = buffer.getFloat();
-        maxAutoLandingTime = buffer.getFloat();
-        maxRollPitchControlValue = buffer.getFloat();
-        maxYawControlValue = buffer.getFloat();
-        for (int i = 0; i < pidRollRate.length; i++) {
-            pidRollRate[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < pidPitchRate.length; i++) {
-            pidPitchRate[i] = buffer.getFloat();
-        }
-        for (int i = 0; i < pidYawRate.length; i++) {
-            pidYawRate[i] = buffer.getFloat();
-        }
-        rollProp = buffer.getFloat();
-        pitchProp = buffer.getFloat();
-        yawProp = buffer.getFloat();
-        maxVerticalAutoVelocity = buffer.getFloat();
-        altPositionProp = buffer.getFloat();
-        altVelocityProp = buffer.getFloat();
-        for (int i = 0; i < pidThrottleAccel.length; i++) {
-            pidThrottleAccel[i] = buffer.getFloat();
-        }
-        throttleAltRateProp = buffer.getFloat();
-        maxAutoAngle = buffer.getFloat();
-        maxAutoVelocity = buffer.getFloat();
-        autoPositionProp = buffer.getFloat();
-        autoVelocityProp = buffer.getFloat();
-        for (int i = 0; i < pidAutoAccel.length; i++) {
-            pidAutoAccel[i] = buffer.getFloat();
-        }
-        stickPositionRateProp = buffer.getFloat();
-        stickMovementMode = buffer.getInt();
-        batteryType = buffer.getInt();
-        errorHandlingAction = buffer.getInt();
-        escPwmFreq = buffer.getInt();
-        for (int i = 0; i < gpsSensorPosition.length; i++) {
-            gpsSensorPosition[i] = buffer.getFloat();
-        }
-        flags.setFlags(buffer.getInt());
-        crcValue = buffer.getInt();
+        decode(dataArray, 0);
+    }
+
+    /**
+     * Decodes settings from src starting at offset, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        uavType = WireFormat.getInt(src, offset + Layout.UAV_TYPE);
+        initialSolverMode = WireFormat.getInt(src, offset + Layout.INITIAL_SOLVER_MODE);
+        manualThrottleMode = WireFormat.getInt(src, offset + Layout.MANUAL_THROTTLE_MODE);
+        autoLandingDescendRate = WireFormat.getFloat(src, offset + Layout.AUTO_LANDING_DESCEND_RATE);
+        maxAutoLandingTime = WireFormat.getFloat(src, offset + Layout.MAX_AUTO_LANDING_TIME);
+        maxRollPitchControlValue = WireFormat.getFloat(src, offset + Layout.MAX_ROLL_PITCH_CONTROL_VALUE);
+        maxYawControlValue = WireFormat.getFloat(src, offset + Layout.MAX_YAW_CONTROL_VALUE);
+        WireFormat.getFloats(src, offset + Layout.PID_ROLL_RATE, pidRollRate);
+        WireFormat.getFloats(src, offset + Layout.PID_PITCH_RATE, pidPitchRate);
+        WireFormat.getFloats(src, offset + Layout.PID_YAW_RATE, pidYawRate);
+        rollProp = WireFormat.getFloat(src, offset + Layout.ROLL_PROP);
+        pitchProp = WireFormat.getFloat(src, offset + Layout.PITCH_PROP);
+        yawProp = WireFormat.getFloat(src, offset + Layout.YAW_PROP);
+        maxVerticalAutoVelocity = WireFormat.getFloat(src, offset + Layout.MAX_VERTICAL_AUTO_VELOCITY);
+        altPositionProp = WireFormat.getFloat(src, offset + Layout.ALT_POSITION_PROP);
+        altVelocityProp = WireFormat.getFloat(src, offset + Layout.ALT_VELOCITY_PROP);
+        WireFormat.getFloats(src, offset + Layout.PID_THROTTLE_ACCEL, pidThrottleAccel);
+        throttleAltRateProp = WireFormat.getFloat(src, offset + Layout.THROTTLE_ALT_RATE_PROP);
+        maxAutoAngle = WireFormat.getFloat(src, offset + Layout.MAX_AUTO_ANGLE);
+        maxAutoVelocity = WireFormat.getFloat(src, offset + Layout.MAX_AUTO_VELOCITY);
+        autoPositionProp = WireFormat.getFloat(src, offset + Layout.AUTO_POSITION_PROP);
+        autoVelocityProp = WireFormat.getFloat(src, offset + Layout.AUTO_VELOCITY_PROP);
+        WireFormat.getFloats(src, offset + Layout.PID_AUTO_ACCEL, pidAutoAccel);
+        stickPositionRateProp = WireFormat.getFloat(src, offset + Layout.STICK_POSITION_RATE_PROP);
+        stickMovementMode = WireFormat.getInt(src, offset + Layout.STICK_MOVEMENT_MODE);
+        batteryType = WireFormat.getInt(src, offset + Layout.BATTERY_TYPE);
+        errorHandlingAction = WireFormat.getInt(src, offset + Layout.ERROR_HANDLING_ACTION);
+        escPwmFreq = WireFormat.getInt(src, offset + Layout.ESC_PWM_FREQ);
+        WireFormat.getFloats(src, offset + Layout.GPS_SENSOR_POSITION, gpsSensorPosition);
+        flags.setFlags(WireFormat.getInt(src, offset + Layout.FLAGS));
+        crcValue = WireFormat.getInt(src, offset + Layout.CRC);
+    }
+
+    /**
+     * Encodes settings to dst starting at offset, see Layout.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putInt(dst, offset + Layout.UAV_TYPE, uavType);
+        WireFormat.putInt(dst, offset + Layout.INITIAL_SOLVER_MODE, initialSolverMode);
+        WireFormat.putInt(dst, offset + Layout.MANUAL_THROTTLE_MODE, manualThrottleMode);
+        WireFormat.putFloat(dst, offset + Layout.AUTO_LANDING_DESCEND_RATE, autoLandingDescendRate);
+        WireFormat.putFloat(dst, offset + Layout.MAX_AUTO_LANDING_TIME, maxAutoLandingTime);
+        WireFormat.putFloat(dst, offset + Layout.MAX_ROLL_PITCH_CONTROL_VALUE, maxRollPitchControlValue);
+        WireFormat.putFloat(dst, offset + Layout.MAX_YAW_CONTROL_VALUE, maxYawControlValue);
+        WireFormat.putFloats(dst, offset + Layout.PID_ROLL_RATE, pidRollRate);
+        WireFormat.putFloats(dst, offset + Layout.PID_PITCH_RATE, pidPitchRate);
+        WireFormat.putFloats(dst, offset + Layout.PID_YAW_RATE, pidYawRate);
+        WireFormat.putFloat(dst, offset + Layout.ROLL_PROP, rollProp);
+        WireFormat.putFloat(dst, offset + Layout.PITCH_PROP, pitchProp);
+        WireFormat.putFloat(dst, offset + Layout.YAW_PROP, yawProp);
+        WireFormat.putFloat(dst, offset + Layout.MAX_VERTICAL_AUTO_VELOCITY, maxVerticalAutoVelocity);
+        WireFormat.putFloat(dst, offset + Layout.ALT_POSITION_PROP, altPositionProp);
+        WireFormat.putFloat(dst, offset + Layout.ALT_VELOCITY_PROP, altVelocityProp);
+        WireFormat.putFloats(dst, offset + Layout.PID_THROTTLE_ACCEL, pidThrottleAccel);
+        WireFormat.putFloat(dst, offset + Layout.THROTTLE_ALT_RATE_PROP, throttleAltRateProp);
+        WireFormat.putFloat(dst, offset + Layout.MAX_AUTO_ANGLE, maxAutoAngle);
+        WireFormat.putFloat(dst, offset + Layout.MAX_AUTO_VELOCITY, maxAutoVelocity);
+        WireFormat.putFloat(dst, offset + Layout.AUTO_POSITION_PROP, autoPositionProp);
+        WireFormat.putFloat(dst, offset + Layout.AUTO_VELOCITY_PROP, autoVelocityProp);
+        WireFormat.putFloats(dst, offset + Layout.PID_AUTO_ACCEL, pidAutoAccel);
+        WireFormat.putFloat(dst, offset + Layout.STICK_POSITION_RATE_PROP, stickPositionRateProp);
+        WireFormat.putInt(dst, offset + Layout.STICK_MOVEMENT_MODE, stickMovementMode);
+        WireFormat.putInt(dst, offset + Layout.BATTERY_TYPE, batteryType);
+        WireFormat.putInt(dst, offset + Layout.ERROR_HANDLING_ACTION, errorHandlingAction);
+        WireFormat.putInt(dst, offset + Layout.ESC_PWM_FREQ, escPwmFreq);
+        WireFormat.putFloats(dst, offset + Layout.GPS_SENSOR_POSITION, gpsSensorPosition);
+        WireFormat.putInt(dst, offset + Layout.FLAGS, flags.getFlags());
+        WireFormat.putInt(dst, offset + Layout.CRC, crcValue);
     }
 
     @Override
@@ -181,7 +207,7 @@ public class ControlSettings implements SignalPayloadData {
 
     private int computeCrc() {
         // compute CRC value from whole data, excluding last 4 bytes (CRC value)
-        return CommMessage.computeCrc32(Arrays.copyOfRange(serialize(), 0, getDataArraySize() - 4));
+        return CommMessage.computeCrc32(serialize(), getDataArraySize() - 4);
     }
 
     public boolean isValid() {
@@ -194,61 +220,56 @@ public class ControlSettings implements SignalPayloadData {
     }
 
     private int getDataArraySize() {
-        return 172;
+        return Layout.SIZE;
     }
 
     public byte[] serialize() {
         byte[] dataArray = new byte[getDataArraySize()];
-        ByteBuffer buffer = ByteBuffer.wrap(dataArray);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        buffer.putInt(uavType);
-        buffer.putInt(initialSolverMode);
-        buffer.putInt(manualThrottleMode);
-        buffer.putFloat(autoLandingDescendRate);
-        buffer.putFloat(maxAutoLandingTime);
-        buffer.putFloat(maxRollPitchControlValue);
-        buffer.putFloat(maxYawControlValue);
-        for (float v : pidRollRate) {
-            buffer.putFloat(v);
-        }
-        for (float v : pidPitchRate) {
-            buffer.putFloat(v);
-        }
-        for (float v : pidYawRate) {
-            buffer.putFloat(v);
-        }
-        buffer.putFloat(rollProp);
-        buffer.putFloat(pitchProp);
-        buffer.putFloat(yawProp);
-        buffer.putFloat(maxVerticalAutoVelocity);
-        buffer.putFloat(altPositionProp);
-        buffer.putFloat(altVelocityProp);
-        for (float v : pidThrottleAccel) {
-            buffer.putFloat(v);
-        }
-        buffer.putFloat(throttleAltRateProp);
-        buffer.putFloat(maxAutoAngle);
-        buffer.putFloat(maxAutoVelocity);
-        buffer.putFloat(autoPositionProp);
-        buffer.putFloat(autoVelocityProp);
-        for (float v : pidAutoAccel) {
-            buffer.putFloat(v);
-        }
-        buffer.putFloat(stickPositionRateProp);
-        buffer.putInt(stickMovementMode);
-        buffer.putInt(batteryType);
-        buffer.putInt(errorHandlingAction);
-        buffer.putInt(escPwmFreq);
-        for (float v : gpsSensorPosition) {
-            buffer.putFloat(v);
-        }
-        buffer.putInt(flags.getFlags());
-        buffer.putInt(crcValue);
-
+        encode(dataArray, 0);
         return dataArray;
     }
 
+    /**
+     * Offsets of fields in data of ControlSettings, sent in packets of SIGNAL messages.
+     */
+    public static final class Layout {
+        public static final int UAV_TYPE = 0;
+        public static final int INITIAL_SOLVER_MODE = UAV_TYPE + WireFormat.INT;
+        public static final int MANUAL_THROTTLE_MODE = INITIAL_SOLVER_MODE + WireFormat.INT;
+        public static final int AUTO_LANDING_DESCEND_RATE = MANUAL_THROTTLE_MODE + WireFormat.INT;
+        public static final int MAX_AUTO_LANDING_TIME = AUTO_LANDING_DESCEND_RATE + WireFormat.FLOAT;
+        public static final int MAX_ROLL_PITCH_CONTROL_VALUE = MAX_AUTO_LANDING_TIME + WireFormat.FLOAT;
+        public static final int MAX_YAW_CONTROL_VALUE = MAX_ROLL_PITCH_CONTROL_VALUE + WireFormat.FLOAT;
+        public static final int PID_ROLL_RATE = MAX_YAW_CONTROL_VALUE + WireFormat.FLOAT;
+        public static final int PID_PITCH_RATE = PID_ROLL_RATE + 3 * WireFormat.FLOAT;
+        public static final int PID_YAW_RATE = PID_PITCH_RATE + 3 * WireFormat.FLOAT;
+        public static final int ROLL_PROP = PID_YAW_RATE + 3 * WireFormat.FLOAT;
+        public static final int PITCH_PROP = ROLL_PROP + WireFormat.FLOAT;
+        public static final int YAW_PROP = PITCH_PROP + WireFormat.FLOAT;
+        public static final int MAX_VERTICAL_AUTO_VELOCITY = YAW_PROP + WireFormat.FLOAT;
+        public static final int ALT_POSITION_PROP = MAX_VERTICAL_AUTO_VELOCITY + WireFormat.FLOAT;
+        public static final int ALT_VELOCITY_PROP = ALT_POSITION_PROP + WireFormat.FLOAT;
+        public static final int PID_THROTTLE_ACCEL = ALT_VELOCITY_PROP + WireFormat.FLOAT;
+        public static final int THROTTLE_ALT_RATE_PROP = PID_THROTTLE_ACCEL + 3 * WireFormat.FLOAT;
+        public static final int MAX_AUTO_ANGLE = THROTTLE_ALT_RATE_PROP + WireFormat.FLOAT;
+        public static final int MAX_AUTO_VELOCITY = MAX_AUTO_ANGLE + WireFormat.FLOAT;
+        public static final int AUTO_POSITION_PROP = MAX_AUTO_VELOCITY + WireFormat.FLOAT;
+        public static final int AUTO_VELOCITY_PROP = AUTO_POSITION_PROP + WireFormat.FLOAT;
+        public static final int PID_AUTO_ACCEL = AUTO_VELOCITY_PROP + WireFormat.FLOAT;
+        public static final int STICK_POSITION_RATE_PROP = PID_AUTO_ACCEL + 3 * WireFormat.FLOAT;
+        public static final int STICK_MOVEMENT_MODE = STICK_POSITION_RATE_PROP + WireFormat.FLOAT;
+        public static final int BATTERY_TYPE = STICK_MOVEMENT_MODE + WireFormat.INT;
+        public static final int ERROR_HANDLING_ACTION = BATTERY_TYPE + WireFormat.INT;
+        public static final int ESC_PWM_FREQ = ERROR_HANDLING_ACTION + WireFormat.INT;
+        public static final int GPS_SENSOR_POSITION = ESC_PWM_FREQ + WireFormat.INT;
+        public static final int FLAGS = GPS_SENSOR_POSITION + 3 * WireFormat.FLOAT;
+        public static final int CRC = FLAGS + WireFormat.INT;
+        public static final int SIZE = CRC + WireFormat.INT;
+
+        private Layout() {
+        }
+    }
+
     public enum UavType {
         TRICOPTER_REAR(1000),
         TRICOPTER_FRONT(1500),
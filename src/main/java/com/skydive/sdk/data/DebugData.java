@@ -2,8 +2,7 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.List;
 
 /**
  * Created by Bartosz Nawrot on 2016-08-22.
@@ -56,23 +55,69 @@ public class DebugData {
         this.battery = debugData.getBattery();
     }
 
+    /**
+     * Copies state of given data without allocation.
+     */
+    public void copyFrom(DebugData debugData) {
+        this.roll = debugData.roll;
+        this.pitch = debugData.pitch;
+        this.yaw = debugData.yaw;
+        this.latitude = debugData.latitude;
+        this.longitude = debugData.longitude;
+        this.relativeAltitude = debugData.relativeAltitude;
+        this.absoluteAltitude = debugData.absoluteAltitude;
+        this.verticalVelocity = debugData.verticalVelocity;
+        this.velocity = debugData.velocity;
+        this.usedThrottle = debugData.usedThrottle;
+        this.distanceToBase = debugData.distanceToBase;
+        this.controllerState = debugData.controllerState;
+        this.flags.setFlags(debugData.flags.getFlags());
+        this.battery = debugData.battery;
+    }
+
     public DebugData(final CommMessage message) {
-        ByteBuffer buffer = ByteBuffer.wrap(message.getPayload());
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        this.roll = buffer.getFloat();
-        this.pitch = buffer.getFloat();
-        this.yaw = buffer.getFloat();
-        this.latitude = buffer.getFloat();
-        this.longitude = buffer.getFloat();
-        this.relativeAltitude = buffer.getFloat();
-        this.absoluteAltitude = buffer.getFloat();
-        this.verticalVelocity = buffer.getFloat();
-        this.velocity = buffer.getFloat();
-        this.usedThrottle = buffer.getFloat();
-        this.distanceToBase = buffer.getFloat();
-        this.controllerState = ControllerState.getControllerState(buffer.getShort());
-        this.flags = new Flags(8, buffer.get());
-        this.battery = buffer.get();
+        this.flags = new Flags(8);
+        decode(message.getPayload(), 0);
+    }
+
+    /**
+     * Decodes data from payload starting at offset of src, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        this.roll = WireFormat.getFloat(src, offset + Layout.ROLL);
+        this.pitch = WireFormat.getFloat(src, offset + Layout.PITCH);
+        this.yaw = WireFormat.getFloat(src, offset + Layout.YAW);
+        this.latitude = WireFormat.getFloat(src, offset + Layout.LATITUDE);
+        this.longitude = WireFormat.getFloat(src, offset + Layout.LONGITUDE);
+        this.relativeAltitude = WireFormat.getFloat(src, offset + Layout.RELATIVE_ALTITUDE);
+        this.absoluteAltitude = WireFormat.getFloat(src, offset + Layout.ABSOLUTE_ALTITUDE);
+        this.verticalVelocity = WireFormat.getFloat(src, offset + Layout.VERTICAL_VELOCITY);
+        this.velocity = WireFormat.getFloat(src, offset + Layout.VELOCITY);
+        this.usedThrottle = WireFormat.getFloat(src, offset + Layout.USED_THROTTLE);
+        this.distanceToBase = WireFormat.getFloat(src, offset + Layout.DISTANCE_TO_BASE);
+        this.controllerState = ControllerState.getControllerState(WireFormat.getShort(src, offset + Layout.CONTROLLER_STATE));
+        this.flags.setFlags(WireFormat.getByte(src, offset + Layout.FLAGS));
+        this.battery = WireFormat.getByte(src, offset + Layout.BATTERY);
+    }
+
+    /**
+     * Encodes data to dst starting at offset, bytes of payload after Layout.SIZE are not written.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putFloat(dst, offset + Layout.ROLL, roll);
+        WireFormat.putFloat(dst, offset + Layout.PITCH, pitch);
+        WireFormat.putFloat(dst, offset + Layout.YAW, yaw);
+        WireFormat.putFloat(dst, offset + Layout.LATITUDE, latitude);
+        WireFormat.putFloat(dst, offset + Layout.LONGITUDE, longitude);
+        WireFormat.putFloat(dst, offset + Layout.RELATIVE_ALTITUDE, relativeAltitude);
+        WireFormat.putFloat(dst, offset + Layout.ABSOLUTE_ALTITUDE, absoluteAltitude);
+        WireFormat.putFloat(dst, offset + Layout.VERTICAL_VELOCITY, verticalVelocity);
+        WireFormat.putFloat(dst, offset + Layout.VELOCITY, velocity);
+        WireFormat.putFloat(dst, offset + Layout.USED_THROTTLE, usedThrottle);
+        WireFormat.putFloat(dst, offset + Layout.DISTANCE_TO_BASE, distanceToBase);
+        WireFormat.putShort(dst, offset + Layout.CONTROLLER_STATE, controllerState.getValue());
+        WireFormat.putByte(dst, offset + Layout.FLAGS, (byte) flags.getFlags());
+        WireFormat.putByte(dst, offset + Layout.BATTERY, battery);
     }
 
     public float getRoll() {
@@ -233,23 +278,49 @@ public class DebugData {
     }
 
     public CommMessage getMessage() {
-        ByteBuffer buffer = ByteBuffer.allocate(CommMessage.getPayloadSizeByType(CommMessage.MessageType.CONTROL));
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putFloat(getRoll());
-        buffer.putFloat(getPitch());
-        buffer.putFloat(getYaw());
-        buffer.putFloat(getLatitude());
-        buffer.putFloat(getLongitude());
-        buffer.putFloat(getRelativeAltitude());
-        buffer.putFloat(getAbsoluteAltitude());
-        buffer.putFloat(getVerticalVelocity());
-        buffer.putFloat(getVelocity());
-        buffer.putFloat(getUsedThrottle());
-        buffer.putFloat(getDistanceToBase());
-        buffer.putShort(getControllerState().getValue());
-        buffer.put((byte) flags.getFlags());
-        buffer.put(battery);
-        return new CommMessage(CommMessage.MessageType.CONTROL, buffer.array());
+        byte[] payload = new byte[CommMessage.getPayloadSizeByType(CommMessage.MessageType.CONTROL)];
+        encode(payload, 0);
+        return new CommMessage(CommMessage.MessageType.CONTROL, payload);
+    }
+
+    /**
+     * Offsets of fields in payload of CONTROL message sent by drone.
+     */
+    public static final class Layout {
+        public static final int ROLL = 0;
+        public static final int PITCH = ROLL + WireFormat.FLOAT;
+        public static final int YAW = PITCH + WireFormat.FLOAT;
+        public static final int LATITUDE = YAW + WireFormat.FLOAT;
+        public static final int LONGITUDE = LATITUDE + WireFormat.FLOAT;
+        public static final int RELATIVE_ALTITUDE = LONGITUDE + WireFormat.FLOAT;
+        public static final int ABSOLUTE_ALTITUDE = RELATIVE_ALTITUDE + WireFormat.FLOAT;
+        public static final int VERTICAL_VELOCITY = ABSOLUTE_ALTITUDE + WireFormat.FLOAT;
+        public static final int VELOCITY = VERTICAL_VELOCITY + WireFormat.FLOAT;
+        public static final int USED_THROTTLE = VELOCITY + WireFormat.FLOAT;
+        public static final int DISTANCE_TO_BASE = USED_THROTTLE + WireFormat.FLOAT;
+        public static final int CONTROLLER_STATE = DISTANCE_TO_BASE + WireFormat.FLOAT;
+        public static final int FLAGS = CONTROLLER_STATE + WireFormat.SHORT;
+        public static final int BATTERY = FLAGS + WireFormat.BYTE;
+        public static final int SIZE = BATTERY + WireFormat.BYTE;
+
+        public static final List<WireFormat.Field> FIELDS = WireFormat.fields(
+                new WireFormat.Field("roll", ROLL, WireFormat.Type.F32),
+                new WireFormat.Field("pitch", PITCH, WireFormat.Type.F32),
+                new WireFormat.Field("yaw", YAW, WireFormat.Type.F32),
+                new WireFormat.Field("latitude", LATITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("longitude", LONGITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("relative_altitude", RELATIVE_ALTITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("absolute_altitude", ABSOLUTE_ALTITUDE, WireFormat.Type.F32),
+                new WireFormat.Field("vertical_velocity", VERTICAL_VELOCITY, WireFormat.Type.F32),
+                new WireFormat.Field("velocity", VELOCITY, WireFormat.Type.F32),
+                new WireFormat.Field("used_throttle", USED_THROTTLE, WireFormat.Type.F32),
+                new WireFormat.Field("distance_to_base", DISTANCE_TO_BASE, WireFormat.Type.F32),
+                new WireFormat.Field("controller_state", CONTROLLER_STATE, WireFormat.Type.I16),
+                new WireFormat.Field("flags", FLAGS, WireFormat.Type.I8),
+                new WireFormat.Field("battery", BATTERY, WireFormat.Type.I8));
+
+        private Layout() {
+        }
     }
 
     public enum ControllerState {
@@ -0,0 +1,142 @@
+package com.skydive.sdk.data;
+
+import com.skydive.sdk.CommMessage;
+
+/**
+ * Flyweight view of DebugData over payload of received CONTROL message, each field is decoded
+ * from the payload when it is accessed. View does not copy the payload and can be rewrapped
+ * to next frame, so frames can be decoded into preallocated DebugData (see copyTo) without
+ * allocation. View is valid only as long as the frame it wraps, consumers that need to retain
+ * the data have to copy it with copyTo or toDebugData.
+ */
+public class DebugDataView {
+
+    private byte[] data;
+    private int offset;
+
+    public DebugDataView() {
+    }
+
+    public DebugDataView(CommMessage message) {
+        wrap(message);
+    }
+
+    public DebugDataView wrap(CommMessage message) {
+        return wrap(message.getPayload(), 0);
+    }
+
+    /**
+     * Points view to payload starting at offset of data, see DebugData.Layout.
+     */
+    public DebugDataView wrap(byte[] data, int offset) {
+        if (offset < 0 || offset + DebugData.Layout.SIZE > data.length) {
+            throw new IndexOutOfBoundsException("DebugData does not fit at " + offset + " of " + data.length + " bytes");
+        }
+        this.data = data;
+        this.offset = offset;
+        return this;
+    }
+
+    public float getRoll() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.ROLL);
+    }
+
+    public float getPitch() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.PITCH);
+    }
+
+    public float getYaw() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.YAW);
+    }
+
+    public float getLatitude() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.LATITUDE);
+    }
+
+    public float getLongitude() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.LONGITUDE);
+    }
+
+    public float getRelativeAltitude() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.RELATIVE_ALTITUDE);
+    }
+
+    public float getAbsoluteAltitude() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.ABSOLUTE_ALTITUDE);
+    }
+
+    public float getVerticalVelocity() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.VERTICAL_VELOCITY);
+    }
+
+    public float getVelocity() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.VELOCITY);
+    }
+
+    public float getUsedThrottle() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.USED_THROTTLE);
+    }
+
+    public float getDistanceToBase() {
+        return WireFormat.getFloat(data, offset + DebugData.Layout.DISTANCE_TO_BASE);
+    }
+
+    /**
+     * Raw value of controller state, decoded without lookup of enum.
+     */
+    public short getControllerStateValue() {
+        return WireFormat.getShort(data, offset + DebugData.Layout.CONTROLLER_STATE);
+    }
+
+    public DebugData.ControllerState getControllerState() {
+        return DebugData.ControllerState.getControllerState(getControllerStateValue());
+    }
+
+    public byte getFlags() {
+        return WireFormat.getByte(data, offset + DebugData.Layout.FLAGS);
+    }
+
+    public boolean getFlagState(DebugData.FlagId id) {
+        return (getFlags() & (1 << id.getValue())) != 0;
+    }
+
+    public ControlData.SolverMode getSolverMode() {
+        return ControlData.SolverMode.getSolverMode((byte) (getFlags() & 0x03));
+    }
+
+    public byte getBattery() {
+        return WireFormat.getByte(data, offset + DebugData.Layout.BATTERY);
+    }
+
+    public boolean isStopState() {
+        return getControllerStateValue() == DebugData.ControllerState.STOP.getValue();
+    }
+
+    /**
+     * Decodes all fields into given data, without allocation.
+     */
+    public void copyTo(DebugData debugData) {
+        debugData.decode(data, offset);
+    }
+
+    /**
+     * Decodes all fields into new DebugData, that can be retained after the frame is reused.
+     */
+    public DebugData toDebugData() {
+        final DebugData result = new DebugData();
+        copyTo(result);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DebugDataView:[ roll: " + String.valueOf(getRoll())
+                + ", pitch: " + String.valueOf(getPitch())
+                + ", yaw: " + String.valueOf(getYaw())
+                + ", lat: " + String.valueOf(getLatitude())
+                + ", lon: " + String.valueOf(getLongitude())
+                + ", alt: " + String.valueOf(getRelativeAltitude())
+                + ", Controller state: " + getControllerState().toString() + "(" + String.valueOf(getControllerStateValue()) + ")"
+                + " ]";
+    }
+}
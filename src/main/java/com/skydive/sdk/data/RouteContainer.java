@@ -5,7 +5,6 @@ import com.skydive.sdk.CommMessage;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
  * Created by Bartosz Nawrot on 2016-10-14.
@@ -129,7 +128,7 @@ public class RouteContainer implements SignalPayloadData {
 
     private int computeCrc() {
         // compute CRC value from whole data, excluding last 4 bytes (CRC value)
-        return CommMessage.computeCrc32(Arrays.copyOfRange(serialize(), 4, getDataArraySize()));
+        return CommMessage.computeCrc32(serialize(), 4, getDataArraySize() - 4);
     }
 
     public boolean isValid() {
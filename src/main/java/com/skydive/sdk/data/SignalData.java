@@ -2,9 +2,6 @@ package com.skydive.sdk.data;
 
 import com.skydive.sdk.CommMessage;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 /**
  * Created by Bartosz Nawrot on 2016-10-13.
  */
@@ -23,10 +20,23 @@ public class SignalData {
     }
 
     public SignalData(CommMessage message) {
-        ByteBuffer buffer = ByteBuffer.wrap(message.getPayload());
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        this.commandValue = buffer.getInt();
-        this.parameterValue = buffer.getInt();
+        decode(message.getPayload(), 0);
+    }
+
+    /**
+     * Decodes data from payload starting at offset of src, see Layout.
+     */
+    public void decode(final byte[] src, final int offset) {
+        this.commandValue = WireFormat.getInt(src, offset + Layout.COMMAND);
+        this.parameterValue = WireFormat.getInt(src, offset + Layout.PARAMETER);
+    }
+
+    /**
+     * Encodes data to dst starting at offset, see Layout.
+     */
+    public void encode(final byte[] dst, final int offset) {
+        WireFormat.putInt(dst, offset + Layout.COMMAND, commandValue);
+        WireFormat.putInt(dst, offset + Layout.PARAMETER, parameterValue);
     }
 
     public Command getCommand() {
@@ -41,34 +51,42 @@ public class SignalData {
         return parameterValue;
     }
 
+    /**
+     * Builds request for retransmission of packetsCount SignalPayloadData packets
+     * starting from firstPacket, packed in parameter as count << 16 | first.
+     */
+    public static SignalData packetsRetransmission(int firstPacket, int packetsCount) {
+        return new SignalData(Command.PACKETS_RETRANSMISSION, (packetsCount << 16) | (firstPacket & 0xffff));
+    }
+
+    public int getFirstPacket() {
+        return parameterValue & 0xffff;
+    }
+
+    public int getPacketsCount() {
+        return parameterValue >>> 16;
+    }
+
     public boolean equals(SignalData command) {
         return this.getCommand() == command.getCommand() && this.getParameter() == command.getParameter();
     }
 
     public CommMessage getMessage() {
-        ByteBuffer buffer = ByteBuffer.allocate(CommMessage.getPayloadSizeByType(CommMessage.MessageType.SIGNAL));
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putInt(commandValue);
-        buffer.putInt(parameterValue);
-        return new CommMessage(CommMessage.MessageType.SIGNAL, buffer.array());
+        byte[] payload = new byte[CommMessage.getPayloadSizeByType(CommMessage.MessageType.SIGNAL)];
+        encode(payload, 0);
+        return new CommMessage(CommMessage.MessageType.SIGNAL, payload);
     }
 
     public static SignalData.Command parseCommand(final byte[] src) {
-        ByteBuffer buffer = ByteBuffer.wrap(src, 0, 4);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        return SignalData.Command.getCommand(buffer.getInt());
+        return SignalData.Command.getCommand(WireFormat.getInt(src, Layout.COMMAND));
     }
 
     public static short parseAllPacketsNumber(final byte[] src) {
-        ByteBuffer buffer = ByteBuffer.wrap(src, CommMessage.SIGNAL_COMMAND_SIZE, 2);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        return buffer.getShort();
+        return WireFormat.getShort(src, CommMessage.SIGNAL_COMMAND_SIZE);
     }
 
     public static short parseActualPacketNumber(final byte[] src) {
-        ByteBuffer buffer = ByteBuffer.wrap(src, CommMessage.SIGNAL_COMMAND_SIZE + 2, 2);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        return buffer.getShort();
+        return WireFormat.getShort(src, CommMessage.SIGNAL_COMMAND_SIZE + 2);
     }
 
     public static boolean hasPayload(final SignalData.Command command) {
@@ -88,6 +106,18 @@ public class SignalData {
         return "SignalData( " + getCommand().toString() + ", " + getParameter().toString() + " )";
     }
 
+    /**
+     * Offsets of fields in payload of SIGNAL message, data of SignalPayloadData follows them.
+     */
+    public static final class Layout {
+        public static final int COMMAND = 0;
+        public static final int PARAMETER = COMMAND + WireFormat.INT;
+        public static final int SIZE = PARAMETER + WireFormat.INT;
+
+        private Layout() {
+        }
+    }
+
     public enum Command {
         DUMMY(0),
 
@@ -123,7 +153,10 @@ public class SignalData {
         // TODO sort these commands at new release
         WHO_AM_I_VALUE(100032), // board type (CalibrationSettings::BoardType)
         PROTOCOL_VERSION_VALUE(100033),
-        PROTOCOL_VERSION(100034);
+        PROTOCOL_VERSION(100034),
+
+        // receiver of SignalPayloadData asks for missing packets, see packetsRetransmission
+        PACKETS_RETRANSMISSION(100035);
 
         private final int value;
 
@@ -165,6 +198,7 @@ public class SignalData {
             else if (value == WHO_AM_I_VALUE.getValue()) return WHO_AM_I_VALUE;
             else if (value == PROTOCOL_VERSION_VALUE.getValue()) return PROTOCOL_VERSION_VALUE;
             else if (value == PROTOCOL_VERSION.getValue()) return PROTOCOL_VERSION;
+            else if (value == PACKETS_RETRANSMISSION.getValue()) return PACKETS_RETRANSMISSION;
             else return DUMMY; // TODO throw some exception
         }
     }
@@ -19,6 +19,11 @@ public interface SignalPayloadData {
      */
     SignalData.Command getDataType();
 
+    /**
+     * serialize
+     */
+    byte[] serialize();
+
     /**
      * getMessages
      */
@@ -0,0 +1,142 @@
+package com.skydive.sdk.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Little endian reads and writes of wire fields at absolute offset of caller's array,
+ * used by layouts of data structures to encode and decode them in place, without wrapping buffers.
+ * Floating point values are written with raw bits, as ByteBuffer does.
+ * Layouts with fixed fields also describe them as list of Field, for tools decoding captured data.
+ */
+public final class WireFormat {
+
+    public static final int BYTE = 1;
+    public static final int SHORT = 2;
+    public static final int INT = 4;
+    public static final int FLOAT = 4;
+    public static final int LONG = 8;
+    public static final int DOUBLE = 8;
+
+    private WireFormat() {
+    }
+
+    public static byte getByte(final byte[] src, final int offset) {
+        return src[offset];
+    }
+
+    public static short getShort(final byte[] src, final int offset) {
+        return (short) ((src[offset] & 0xff) | (src[offset + 1] & 0xff) << 8);
+    }
+
+    public static int getInt(final byte[] src, final int offset) {
+        return (src[offset] & 0xff)
+                | (src[offset + 1] & 0xff) << 8
+                | (src[offset + 2] & 0xff) << 16
+                | (src[offset + 3] & 0xff) << 24;
+    }
+
+    public static long getLong(final byte[] src, final int offset) {
+        return (getInt(src, offset) & 0xffffffffL) | (long) getInt(src, offset + 4) << 32;
+    }
+
+    public static float getFloat(final byte[] src, final int offset) {
+        return Float.intBitsToFloat(getInt(src, offset));
+    }
+
+    public static double getDouble(final byte[] src, final int offset) {
+        return Double.longBitsToDouble(getLong(src, offset));
+    }
+
+    public static void getFloats(final byte[] src, final int offset, final float[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = getFloat(src, offset + i * FLOAT);
+        }
+    }
+
+    public static void putByte(final byte[] dst, final int offset, final byte value) {
+        dst[offset] = value;
+    }
+
+    public static void putShort(final byte[] dst, final int offset, final short value) {
+        dst[offset] = (byte) value;
+        dst[offset + 1] = (byte) (value >> 8);
+    }
+
+    public static void putInt(final byte[] dst, final int offset, final int value) {
+        dst[offset] = (byte) value;
+        dst[offset + 1] = (byte) (value >> 8);
+        dst[offset + 2] = (byte) (value >> 16);
+        dst[offset + 3] = (byte) (value >> 24);
+    }
+
+    public static void putLong(final byte[] dst, final int offset, final long value) {
+        putInt(dst, offset, (int) value);
+        putInt(dst, offset + 4, (int) (value >> 32));
+    }
+
+    public static void putFloat(final byte[] dst, final int offset, final float value) {
+        putInt(dst, offset, Float.floatToRawIntBits(value));
+    }
+
+    public static void putDouble(final byte[] dst, final int offset, final double value) {
+        putLong(dst, offset, Double.doubleToRawLongBits(value));
+    }
+
+    public static void putFloats(final byte[] dst, final int offset, final float[] src) {
+        for (int i = 0; i < src.length; i++) {
+            putFloat(dst, offset + i * FLOAT, src[i]);
+        }
+    }
+
+    public static List<Field> fields(Field... fields) {
+        return Collections.unmodifiableList(Arrays.asList(fields));
+    }
+
+    public enum Type {
+        I8(BYTE),
+        I16(SHORT),
+        I32(INT),
+        I64(LONG),
+        F32(FLOAT),
+        F64(DOUBLE);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Field of layout: name, offset in structure and type.
+     */
+    public static final class Field {
+        private final String name;
+        private final int offset;
+        private final Type type;
+
+        public Field(String name, int offset, Type type) {
+            this.name = name;
+            this.offset = offset;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public Type getType() {
+            return type;
+        }
+    }
+}
@@ -10,6 +10,7 @@ public abstract class CommEvent {
     public enum EventType {
         MESSAGE_RECEIVED,
         SIGNAL_PAYLOAD_RECEIVED,
+        SIGNAL_PAYLOAD_INCOMPLETE,
     }
 
     public abstract EventType getType();
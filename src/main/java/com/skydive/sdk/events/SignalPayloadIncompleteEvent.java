@@ -0,0 +1,52 @@
+package com.skydive.sdk.events;
+
+import com.skydive.sdk.data.SignalData;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Posted by CommDispatcher when sender finished SignalPayloadData transfer
+ * but some of packets were not received. Receiver should respond with
+ * retransmission requests, one for each range of missing packets.
+ */
+public class SignalPayloadIncompleteEvent extends CommEvent {
+
+    private SignalData.Command dataType;
+    private BitSet missingPackets;
+
+    public SignalPayloadIncompleteEvent(SignalData.Command dataType, BitSet missingPackets) {
+        this.dataType = dataType;
+        this.missingPackets = missingPackets;
+    }
+
+    public SignalData.Command getDataType() {
+        return dataType;
+    }
+
+    public BitSet getMissingPackets() {
+        return missingPackets;
+    }
+
+    public ArrayList<SignalData> getRetransmissionRequests() {
+        ArrayList<SignalData> result = new ArrayList<>();
+        int first = missingPackets.nextSetBit(0);
+        while (first >= 0) {
+            final int end = missingPackets.nextClearBit(first);
+            result.add(SignalData.packetsRetransmission(first, end - first));
+            first = missingPackets.nextSetBit(end);
+        }
+        return result;
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.SIGNAL_PAYLOAD_INCOMPLETE;
+    }
+
+    @Override
+    public String toString() {
+        return "SIGNAL_PAYLOAD_INCOMPLETE_EVENT: " + dataType.toString()
+                + ", missing packets: " + missingPackets.cardinality();
+    }
+}
@@ -0,0 +1,258 @@
+package com.skydive.sdk.interfaces;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * I/O multiplexer shared by many CommInterfaces. Hub runs fixed number of selector threads,
+ * every link registered in hub is assigned to one of them and all its I/O and listener callbacks
+ * (so also its CommDispatcher) are executed by that thread. Thread count does not depend on
+ * number of links. Each selector thread has single receive buffer used by all its links,
+ * as received data is completely consumed by listener before next read.
+ * Hub collects statistics of all its links, see getStatistics. Traffic of closed links stays
+ * in hub totals, so totals never go back.
+ */
+public class CommHub {
+
+    private static Logger logger = LoggerFactory.getLogger(CommHub.class);
+
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+
+    private final Loop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+
+    // guarded by this, statistics of each link at the time it was added, as counters
+    // of interface continue after reconnect
+    private final Map<StatisticsSource, LinkStatistics> links = new LinkedHashMap<>();
+    // traffic of removed links, guarded by this
+    private long closedBytesReceived;
+    private long closedBytesSent;
+
+    public CommHub(int threadsCount) throws IOException {
+        loops = new Loop[threadsCount];
+        for (int i = 0; i < threadsCount; i++) {
+            loops[i] = new Loop(Selector.open(), "comm_hub_" + i);
+        }
+        for (Loop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Stops all selector threads, channels registered in hub are closed.
+     */
+    public void close() {
+        for (Loop loop : loops) {
+            loop.running = false;
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * Waits until selector threads are stopped, does not wait for the calling thread.
+     */
+    public void awaitTermination() throws InterruptedException {
+        for (Loop loop : loops) {
+            if (loop.thread != Thread.currentThread()) {
+                loop.thread.join();
+            }
+        }
+    }
+
+    public int getThreadsCount() {
+        return loops.length;
+    }
+
+    public synchronized int getLinksCount() {
+        return links.size();
+    }
+
+    /**
+     * Returns traffic of all links served by hub since its start, including closed ones.
+     */
+    public synchronized LinkStatistics getStatistics() {
+        long bytesReceived = closedBytesReceived;
+        long bytesSent = closedBytesSent;
+        for (Map.Entry<StatisticsSource, LinkStatistics> link : links.entrySet()) {
+            final LinkStatistics statistics = link.getKey().getStatistics();
+            bytesReceived += statistics.getBytesReceived() - link.getValue().getBytesReceived();
+            bytesSent += statistics.getBytesSent() - link.getValue().getBytesSent();
+        }
+        return new LinkStatistics(bytesReceived, bytesSent, System.nanoTime());
+    }
+
+    /**
+     * Returns statistics of each link served by hub.
+     */
+    public synchronized List<LinkStatistics> getLinksStatistics() {
+        List<LinkStatistics> result = new ArrayList<>();
+        for (StatisticsSource link : links.keySet()) {
+            result.add(link.getStatistics());
+        }
+        return result;
+    }
+
+    Loop nextLoop() {
+        return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    synchronized void addLink(StatisticsSource link) {
+        if (!links.containsKey(link)) {
+            links.put(link, link.getStatistics());
+        }
+    }
+
+    synchronized void removeLink(StatisticsSource link) {
+        final LinkStatistics added = links.remove(link);
+        if (added != null) {
+            final LinkStatistics statistics = link.getStatistics();
+            closedBytesReceived += statistics.getBytesReceived() - added.getBytesReceived();
+            closedBytesSent += statistics.getBytesSent() - added.getBytesSent();
+        }
+    }
+
+    interface StatisticsSource {
+        LinkStatistics getStatistics();
+    }
+
+    /**
+     * Handler of channel registered in hub, called from selector thread.
+     */
+    interface ChannelHandler {
+        void onReady(SelectionKey key);
+
+        void onClosed();
+    }
+
+    static class Loop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        private volatile boolean running = true;
+        private volatile boolean terminated;
+
+        private Loop(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Executes task on selector thread, immediately when called from that thread
+         * and no other task is waiting, so tasks are always executed in order.
+         * After hub is closed task is executed by calling thread.
+         */
+        void execute(Runnable task) {
+            if (isLoopThread() && tasks.isEmpty()) {
+                task.run();
+            } else {
+                submit(task);
+            }
+        }
+
+        /**
+         * Executes task on selector thread, always after actually handled channel events,
+         * also when called from that thread.
+         */
+        void submit(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+            if (terminated) {
+                runTasks();
+            }
+        }
+
+        /**
+         * Deregisters keys of closed channels without waiting for next select.
+         * Can not be called while selected keys are handled.
+         */
+        void deregisterCancelledKeys() {
+            if (!selector.isOpen()) {
+                return;
+            }
+            try {
+                selector.selectNow();
+            } catch (IOException e) {
+                logger.info("Select failed: " + e.getMessage());
+            }
+        }
+
+        boolean isLoopThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws IOException {
+            return channel.register(selector, ops, handler);
+        }
+
+        ByteBuffer getReceiveBuffer() {
+            return receiveBuffer;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    logger.info("Select failed: " + e.getMessage());
+                    break;
+                }
+                runTasks();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isValid()) {
+                        runSafely(new Runnable() {
+                            @Override
+                            public void run() {
+                                ((ChannelHandler) key.attachment()).onReady(key);
+                            }
+                        });
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((ChannelHandler) key.attachment()).onClosed();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.info("Closing selector failed: " + e.getMessage());
+            }
+            terminated = true;
+            runTasks();
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                runSafely(task);
+            }
+        }
+
+        private void runSafely(Runnable task) {
+            // exception from one link can not stop other links
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("Unhandled exception on " + thread.getName(), e);
+            }
+        }
+    }
+}
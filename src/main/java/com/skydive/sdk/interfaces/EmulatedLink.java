@@ -0,0 +1,546 @@
+package com.skydive.sdk.interfaces;
+
+import com.skydive.sdk.CommInterface;
+import com.skydive.sdk.VirtualScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In process link between ground and board CommInterfaces (e.g. CommHandler and UavSimulator),
+ * emulating properties of real radio link in each direction: latency, jitter, bandwidth,
+ * packet loss and bit errors. Packet is data of single send call.
+ * Each direction is lock free bounded ring of packets, consumed by its own delivery thread
+ * which calls listener of receiving side. Link keeps order of packets as serial link does,
+ * jitter only delays packets. Random effects are reproducible for given seed.
+ * Board endpoint behaves like a server: it stays open after disconnect, until closed,
+ * and link is up when both endpoints are connected.
+ * Link created with VirtualScheduler has no threads, packets are delivered by scheduler tasks
+ * in virtual time, so whole session runs on thread advancing the scheduler.
+ */
+public class EmulatedLink {
+
+    private static Logger logger = LoggerFactory.getLogger(EmulatedLink.class);
+
+    private static final int DEFAULT_RING_CAPACITY = 1024;
+
+    private final Endpoint ground;
+    private final Endpoint board;
+
+    private final Direction uplink;
+    private final Direction downlink;
+
+    private final VirtualScheduler scheduler;
+
+    public EmulatedLink() {
+        this(System.nanoTime());
+    }
+
+    public EmulatedLink(long seed) {
+        this(seed, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * @param ringCapacity packets buffered in each direction, power of 2
+     */
+    public EmulatedLink(long seed, int ringCapacity) {
+        this(seed, ringCapacity, null);
+    }
+
+    /**
+     * Link working in virtual time of scheduler.
+     */
+    public EmulatedLink(long seed, VirtualScheduler scheduler) {
+        this(seed, DEFAULT_RING_CAPACITY, scheduler);
+    }
+
+    private EmulatedLink(long seed, int ringCapacity, VirtualScheduler scheduler) {
+        this.scheduler = scheduler;
+        ground = new Endpoint(false);
+        board = new Endpoint(true);
+        ground.peer = board;
+        board.peer = ground;
+        uplink = new Direction(ground, board, new Random(seed), ringCapacity, scheduler, "emulated_uplink");
+        downlink = new Direction(board, ground, new Random(seed + 1), ringCapacity, scheduler, "emulated_downlink");
+        ground.output = uplink;
+        board.output = downlink;
+    }
+
+    /**
+     * Interface for the application side (CommHandler).
+     */
+    public Endpoint getGroundInterface() {
+        return ground;
+    }
+
+    /**
+     * Interface for the board side (UavSimulator).
+     */
+    public Endpoint getBoardInterface() {
+        return board;
+    }
+
+    /**
+     * Ground to board direction.
+     */
+    public Direction getUplink() {
+        return uplink;
+    }
+
+    /**
+     * Board to ground direction.
+     */
+    public Direction getDownlink() {
+        return downlink;
+    }
+
+    public void setLatency(double latency) {
+        uplink.setLatency(latency);
+        downlink.setLatency(latency);
+    }
+
+    public void setJitter(double jitter) {
+        uplink.setJitter(jitter);
+        downlink.setJitter(jitter);
+    }
+
+    public void setBandwidth(int bandwidth) {
+        uplink.setBandwidth(bandwidth);
+        downlink.setBandwidth(bandwidth);
+    }
+
+    public void setLossRate(double lossRate) {
+        uplink.setLossRate(lossRate);
+        downlink.setLossRate(lossRate);
+    }
+
+    public void setBitErrorRate(double bitErrorRate) {
+        uplink.setBitErrorRate(bitErrorRate);
+        downlink.setBitErrorRate(bitErrorRate);
+    }
+
+    /**
+     * Stops delivery, packets in flight are dropped.
+     */
+    public void close() {
+        ground.disconnect();
+        board.close();
+        uplink.stop();
+        downlink.stop();
+    }
+
+    private static boolean isUp(Endpoint endpoint) {
+        return endpoint.open && endpoint.peer.open;
+    }
+
+    public class Endpoint extends CommInterface implements CommHub.StatisticsSource {
+        private final boolean server;
+        private Endpoint peer;
+        private Direction output;
+
+        private volatile boolean open;
+
+        private volatile long bytesReceived;
+        private final AtomicLong bytesSent = new AtomicLong(0);
+
+        private Endpoint(boolean server) {
+            this.server = server;
+        }
+
+        @Override
+        public void connect() {
+            Endpoint peerNotified = null;
+            synchronized (EmulatedLink.this) {
+                if (open) {
+                    logger.warn("Endpoint already connected");
+                    return;
+                }
+                open = true;
+                if (peer.open) {
+                    peerNotified = peer;
+                }
+            }
+            if (peerNotified != null) {
+                // peer is notified first, as server resets its state on connection
+                peerNotified.listener.onConnected();
+                listener.onConnected();
+            }
+        }
+
+        /**
+         * Brings the link down. Board endpoint stays open and waits for ground to connect again.
+         */
+        @Override
+        public void disconnect() {
+            final Endpoint client = server ? peer : this;
+            synchronized (EmulatedLink.this) {
+                if (!isUp(client)) {
+                    client.open = false;
+                    return;
+                }
+                client.open = false;
+            }
+            listener.onDisconnected();
+            peer.listener.onDisconnected();
+        }
+
+        /**
+         * Closes board endpoint, same as disconnect for ground endpoint.
+         */
+        public void close() {
+            if (!server) {
+                disconnect();
+                return;
+            }
+            final boolean wasUp;
+            synchronized (EmulatedLink.this) {
+                wasUp = isUp(this);
+                open = false;
+            }
+            if (wasUp) {
+                listener.onDisconnected();
+                peer.listener.onDisconnected();
+            }
+        }
+
+        @Override
+        public void send(final byte[] data, final int dataSize) {
+            if (!isUp(this)) {
+                logger.debug("Sending when link is down, data dropped");
+                return;
+            }
+            bytesSent.addAndGet(dataSize);
+            output.offer(data, dataSize);
+        }
+
+        public boolean isConnected() {
+            return isUp(this);
+        }
+
+        @Override
+        public LinkStatistics getStatistics() {
+            return new LinkStatistics(bytesReceived, bytesSent.get(),
+                    scheduler != null ? scheduler.nanoTime() : System.nanoTime());
+        }
+
+        private void deliver(ByteBuffer data) {
+            bytesReceived += data.remaining();
+            notifyDataReceived(data);
+        }
+    }
+
+    /**
+     * One direction of the link with its properties, which can be changed at any time.
+     */
+    public static class Direction {
+        private final Endpoint sender;
+        private final Endpoint receiver;
+        private final Random random;
+        private final Ring ring;
+        private final VirtualScheduler scheduler;
+        private final Thread thread;
+        private final Runnable deliveryTask;
+
+        private volatile boolean running = true;
+        private volatile boolean waiting;
+
+        private volatile long latency; // [ns]
+        private volatile long jitter; // [ns]
+        private volatile int bandwidth; // [bytes/s], 0 - unlimited
+        private volatile double lossRate;
+        private volatile double bitErrorRate;
+
+        // delivery thread state
+        private long lastTransmissionEnd;
+        private long lastDelivery;
+        private long bitsToNextError = -1;
+        private double actualBitErrorRate;
+
+        private volatile long packetsDelivered;
+        private volatile long packetsLost;
+        private final AtomicLong packetsOverflowed = new AtomicLong(0);
+        private volatile long bitErrors;
+
+        private Direction(Endpoint sender, Endpoint receiver, Random random, int ringCapacity,
+                          VirtualScheduler scheduler, String name) {
+            this.sender = sender;
+            this.receiver = receiver;
+            this.random = random;
+            this.ring = new Ring(ringCapacity);
+            this.scheduler = scheduler;
+            if (scheduler != null) {
+                this.thread = null;
+                this.deliveryTask = new Runnable() {
+                    @Override
+                    public void run() {
+                        // deliveries are scheduled in order of packets, so it is always the oldest one
+                        if (running) {
+                            deliver(ring.peek());
+                        }
+                    }
+                };
+            } else {
+                this.deliveryTask = null;
+                this.thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliveryLoop();
+                    }
+                }, name);
+                this.thread.setDaemon(true);
+                this.thread.start();
+            }
+        }
+
+        /**
+         * @param latency one way latency [ms]
+         */
+        public void setLatency(double latency) {
+            this.latency = (long) (latency * 1e6);
+        }
+
+        /**
+         * @param jitter maximal additional random delay [ms]
+         */
+        public void setJitter(double jitter) {
+            this.jitter = (long) (jitter * 1e6);
+        }
+
+        /**
+         * @param bandwidth [bytes/s], 0 for unlimited
+         */
+        public void setBandwidth(int bandwidth) {
+            this.bandwidth = bandwidth;
+        }
+
+        /**
+         * @param lossRate probability of losing whole packet
+         */
+        public void setLossRate(double lossRate) {
+            this.lossRate = lossRate;
+        }
+
+        /**
+         * @param bitErrorRate probability of flipping each bit
+         */
+        public void setBitErrorRate(double bitErrorRate) {
+            this.bitErrorRate = bitErrorRate;
+        }
+
+        public long getPacketsDelivered() {
+            return packetsDelivered;
+        }
+
+        public long getPacketsLost() {
+            return packetsLost;
+        }
+
+        /**
+         * Packets dropped because ring was full.
+         */
+        public long getPacketsOverflowed() {
+            return packetsOverflowed.get();
+        }
+
+        public long getBitErrors() {
+            return bitErrors;
+        }
+
+        private void offer(byte[] data, int dataSize) {
+            if (scheduler != null) {
+                final long now = scheduler.nanoTime();
+                if (!ring.offer(data, dataSize, now)) {
+                    packetsOverflowed.incrementAndGet();
+                    return;
+                }
+                scheduler.schedule(deliveryTask, computeDeliveryTime(dataSize, now) - now, 0);
+                return;
+            }
+            if (!ring.offer(data, dataSize, System.nanoTime())) {
+                packetsOverflowed.incrementAndGet();
+                return;
+            }
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void stop() {
+            running = false;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void deliveryLoop() {
+            while (running) {
+                final int slot = ring.peek();
+                if (slot < 0) {
+                    waiting = true;
+                    if (ring.peek() < 0 && running) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                final long delivery = computeDeliveryTime(ring.getSize(slot), ring.getTimestamp(slot));
+                long remaining;
+                while ((remaining = delivery - System.nanoTime()) > 0 && running) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                deliver(slot);
+            }
+        }
+
+        private void deliver(int slot) {
+            if (lossRate > 0.0 && random.nextDouble() < lossRate) {
+                packetsLost++;
+            } else if (isUp(sender)) {
+                final ByteBuffer data = ring.getData(slot);
+                injectBitErrors(data);
+                packetsDelivered++;
+                receiver.deliver(data);
+            }
+            ring.release();
+        }
+
+        private long computeDeliveryTime(int size, long timestamp) {
+            long transmissionEnd = Math.max(timestamp, lastTransmissionEnd);
+            final int bandwidth = this.bandwidth;
+            if (bandwidth > 0) {
+                transmissionEnd += size * 1000000000L / bandwidth;
+            }
+            lastTransmissionEnd = transmissionEnd;
+            long delivery = transmissionEnd + latency;
+            final long jitter = this.jitter;
+            if (jitter > 0) {
+                delivery += (long) (random.nextDouble() * jitter);
+            }
+            delivery = Math.max(delivery, lastDelivery);
+            lastDelivery = delivery;
+            return delivery;
+        }
+
+        private void injectBitErrors(ByteBuffer data) {
+            final double bitErrorRate = this.bitErrorRate;
+            if (bitErrorRate <= 0.0) {
+                return;
+            }
+            if (bitErrorRate != actualBitErrorRate) {
+                actualBitErrorRate = bitErrorRate;
+                bitsToNextError = -1;
+            }
+            final long bits = data.remaining() * 8L;
+            long position = 0;
+            while (true) {
+                if (bitsToNextError < 0) {
+                    // distance to next error has geometric distribution
+                    bitsToNextError = (long) (Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - bitErrorRate));
+                }
+                if (position + bitsToNextError >= bits) {
+                    bitsToNextError -= bits - position;
+                    return;
+                }
+                position += bitsToNextError;
+                final int index = data.position() + (int) (position >> 3);
+                data.put(index, (byte) (data.get(index) ^ (1 << (position & 7))));
+                bitErrors++;
+                position++;
+                bitsToNextError = -1;
+            }
+        }
+    }
+
+    /**
+     * Bounded multi producer single consumer ring of packets. Producers claim slots with CAS,
+     * slot sequence tells whether it is free, published or consumed.
+     */
+    private static class Ring {
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong(0);
+        private long head;
+
+        private final byte[][] data;
+        private final ByteBuffer[] views;
+        private final int[] sizes;
+        private final long[] timestamps;
+
+        Ring(int capacity) {
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Ring capacity has to be power of 2: " + capacity);
+            }
+            mask = capacity - 1;
+            sequences = new AtomicLongArray(capacity);
+            data = new byte[capacity][];
+            views = new ByteBuffer[capacity];
+            sizes = new int[capacity];
+            timestamps = new long[capacity];
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+                data[i] = new byte[64];
+                views[i] = ByteBuffer.wrap(data[i]);
+            }
+        }
+
+        boolean offer(byte[] packet, int packetSize, long timestamp) {
+            long position;
+            int slot;
+            while (true) {
+                position = tail.get();
+                slot = (int) (position & mask);
+                final long difference = sequences.get(slot) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                } else if (difference < 0) {
+                    return false;
+                }
+            }
+            if (data[slot].length < packetSize) {
+                data[slot] = new byte[packetSize];
+                views[slot] = ByteBuffer.wrap(data[slot]);
+            }
+            System.arraycopy(packet, 0, data[slot], 0, packetSize);
+            sizes[slot] = packetSize;
+            timestamps[slot] = timestamp;
+            sequences.set(slot, position + 1);
+            return true;
+        }
+
+        /**
+         * Returns slot of the oldest published packet, -1 when there is none.
+         */
+        int peek() {
+            final int slot = (int) (head & mask);
+            return sequences.get(slot) == head + 1 ? slot : -1;
+        }
+
+        int getSize(int slot) {
+            return sizes[slot];
+        }
+
+        long getTimestamp(int slot) {
+            return timestamps[slot];
+        }
+
+        ByteBuffer getData(int slot) {
+            final ByteBuffer view = views[slot];
+            view.clear();
+            view.limit(sizes[slot]);
+            return view;
+        }
+
+        void release() {
+            final int slot = (int) (head & mask);
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.skydive.sdk.interfaces;
+
+import com.skydive.sdk.CommInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Base of CommInterfaces served by CommHub. Handles hub assignment and interface lifecycle.
+ * Channels are opened by subclass on connect calling thread, so errors are reported and local
+ * address is known immediately, then they are registered and closed on hub selector thread.
+ * Interface created without hub uses its own single threaded hub.
+ */
+abstract class HubCommInterface extends CommInterface implements CommHub.StatisticsSource {
+
+    private static Logger logger = LoggerFactory.getLogger(HubCommInterface.class);
+
+    private final boolean ownHub;
+    private CommHub hub;
+    CommHub.Loop loop;
+
+    private volatile boolean started;
+
+    volatile long bytesReceived;
+    volatile long bytesSent;
+
+    HubCommInterface(CommHub hub) {
+        this.hub = hub;
+        this.ownHub = hub == null;
+    }
+
+    @Override
+    public void connect() {
+        if (started) {
+            logger.warn(getClass().getSimpleName() + " already started");
+            return;
+        }
+        if (ownHub) {
+            try {
+                if (hub != null) {
+                    // previous hub thread may be still closing sockets
+                    hub.awaitTermination();
+                }
+                hub = new CommHub(1);
+            } catch (IOException e) {
+                logger.info("Connecting failed: " + e.getMessage());
+                listener.onError(e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            loop = hub.nextLoop();
+        } else if (loop == null) {
+            // link stays on the same thread, so close and reconnect are executed in order
+            loop = hub.nextLoop();
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            logger.info("Connecting failed: " + e.getMessage());
+            closeAll();
+            listener.onError(e);
+            return;
+        }
+        started = true;
+        hub.addLink(this);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    register();
+                } catch (IOException e) {
+                    logger.info("Connecting failed: " + e.getMessage());
+                    closeAll();
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes all channels of the interface. When called from other thread than selector thread,
+     * waits until channels are closed, so interface can be connected again right away.
+     */
+    public void close() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        final CountDownLatch closed = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeAll();
+            }
+        });
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                // sockets are released when selector deregisters their keys
+                loop.deregisterCancelledKeys();
+                closed.countDown();
+            }
+        });
+        if (!loop.isLoopThread()) {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        hub.removeLink(this);
+        if (ownHub) {
+            hub.close();
+        }
+    }
+
+    @Override
+    public LinkStatistics getStatistics() {
+        return new LinkStatistics(bytesReceived, bytesSent, System.nanoTime());
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Opens channels, called on connect calling thread.
+     */
+    abstract void open() throws IOException;
+
+    /**
+     * Registers opened channels in loop, called on selector thread.
+     */
+    abstract void register() throws IOException;
+
+    /**
+     * Closes all channels, called on selector thread.
+     */
+    abstract void closeAll();
+}
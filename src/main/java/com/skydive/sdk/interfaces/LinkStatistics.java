@@ -0,0 +1,67 @@
+package com.skydive.sdk.interfaces;
+
+/**
+ * Snapshot of link traffic counters. Throughput is computed from two snapshots
+ * of the same link (or the same hub), taken at different time.
+ */
+public class LinkStatistics {
+
+    private final long bytesReceived;
+    private final long bytesSent;
+    private final long timestamp; // [ns]
+
+    public LinkStatistics() {
+        this(0, 0, System.nanoTime());
+    }
+
+    public LinkStatistics(long bytesReceived, long bytesSent, long timestamp) {
+        this.bytesReceived = bytesReceived;
+        this.bytesSent = bytesSent;
+        this.timestamp = timestamp;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public LinkStatistics add(LinkStatistics statistics) {
+        return new LinkStatistics(bytesReceived + statistics.bytesReceived,
+                bytesSent + statistics.bytesSent,
+                Math.max(timestamp, statistics.timestamp));
+    }
+
+    /**
+     * Receive throughput since previous snapshot [bytes/s].
+     */
+    public double getReceiveRate(LinkStatistics previous) {
+        return rate(bytesReceived - previous.bytesReceived, previous);
+    }
+
+    /**
+     * Send throughput since previous snapshot [bytes/s].
+     */
+    public double getSendRate(LinkStatistics previous) {
+        return rate(bytesSent - previous.bytesSent, previous);
+    }
+
+    private double rate(long bytes, LinkStatistics previous) {
+        final long period = timestamp - previous.timestamp;
+        return period > 0 ? bytes * 1e9 / period : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkStatistics{" +
+                "bytesReceived=" + bytesReceived +
+                ", bytesSent=" + bytesSent +
+                '}';
+    }
+}
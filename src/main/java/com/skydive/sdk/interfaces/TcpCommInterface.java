@@ -0,0 +1,349 @@
+package com.skydive.sdk.interfaces;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * CommInterface over TCP implemented with non blocking SocketChannel.
+ * Interface works as a client (connects to host:port) or as a server (listens on port
+ * and serves one client at a time, used by UavSimulator). All listener callbacks are called
+ * from CommHub selector thread, received data is read to direct buffer and passed to
+ * ByteBufferListener without copying.
+ * Many interfaces can share one CommHub, interface created without hub uses its own
+ * single threaded hub.
+ * Send never blocks: data is written immediately when socket accepts it, otherwise it is
+ * queued and written by selector thread when socket becomes writable.
+ */
+public class TcpCommInterface extends HubCommInterface {
+
+    private static Logger logger = LoggerFactory.getLogger(TcpCommInterface.class);
+
+    private final InetSocketAddress address;
+    private final boolean server;
+
+    // accessed only from selector thread, except of getLocalPort
+    private volatile ServerSocketChannel serverChannel;
+    private volatile SocketChannel channel;
+    private SelectionKey channelKey;
+
+    private volatile boolean connected;
+
+    // data that could not be written immediately, guarded by sendQueue
+    private final ArrayDeque<ByteBuffer> sendQueue = new ArrayDeque<>();
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+
+    /**
+     * Creates client interface that connects to given host.
+     */
+    public TcpCommInterface(String host, int port) {
+        this(host, port, null);
+    }
+
+    /**
+     * Creates client interface that connects to given host, served by given hub.
+     */
+    public TcpCommInterface(String host, int port, CommHub hub) {
+        super(hub);
+        this.address = new InetSocketAddress(host, port);
+        this.server = false;
+    }
+
+    /**
+     * Creates server interface that listens on given port.
+     * Disconnect drops actual client, interface keeps listening until close is called.
+     */
+    public TcpCommInterface(int port) {
+        this(port, null);
+    }
+
+    /**
+     * Creates server interface that listens on given port, served by given hub.
+     */
+    public TcpCommInterface(int port, CommHub hub) {
+        super(hub);
+        this.address = new InetSocketAddress(port);
+        this.server = true;
+    }
+
+    @Override
+    public void disconnect() {
+        if (!isStarted()) {
+            return;
+        }
+        if (server) {
+            // drop client, keep listening
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    closeChannel();
+                }
+            });
+        } else {
+            close();
+        }
+    }
+
+    @Override
+    public void send(final byte[] data, final int dataSize) {
+        synchronized (sendQueue) {
+            if (!connected) {
+                logger.debug("Sending when not connected, data dropped");
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, dataSize);
+            if (sendQueue.isEmpty()) {
+                try {
+                    bytesSent += channel.write(buffer);
+                } catch (IOException e) {
+                    // reported by selector thread on next read
+                    logger.info("Write failed: " + e.getMessage());
+                    return;
+                }
+            }
+            if (buffer.hasRemaining()) {
+                queueRemaining(buffer.remaining(), new ByteBuffer[]{buffer}, 0, 1);
+            }
+        }
+    }
+
+    /**
+     * Sends all buffers with gathering write, the rest is queued as one buffer.
+     */
+    @Override
+    public void send(final ByteBuffer[] buffers, final int offset, final int length) {
+        synchronized (sendQueue) {
+            if (!connected) {
+                logger.debug("Sending when not connected, data dropped");
+                return;
+            }
+            if (sendQueue.isEmpty()) {
+                try {
+                    bytesSent += channel.write(buffers, offset, length);
+                } catch (IOException e) {
+                    // reported by selector thread on next read
+                    logger.info("Write failed: " + e.getMessage());
+                    return;
+                }
+            }
+            int remaining = 0;
+            for (int i = offset; i < offset + length; i++) {
+                remaining += buffers[i].remaining();
+            }
+            if (remaining > 0) {
+                queueRemaining(remaining, buffers, offset, length);
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns local port, useful when server listens on port 0.
+     */
+    public int getLocalPort() {
+        try {
+            final ServerSocketChannel serverChannel = this.serverChannel;
+            final SocketChannel channel = this.channel;
+            if (serverChannel != null) {
+                return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            } else if (channel != null) {
+                return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            }
+        } catch (IOException e) {
+            logger.info("Can not get local address: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private void queueRemaining(int remaining, ByteBuffer[] buffers, int offset, int length) {
+        // caller may reuse its buffers, so the rest has to be copied
+        ByteBuffer copy = ByteBuffer.allocate(remaining);
+        for (int i = offset; i < offset + length; i++) {
+            copy.put(buffers[i]);
+        }
+        copy.flip();
+        sendQueue.add(copy);
+        if (writeRequested.compareAndSet(false, true)) {
+            loop.execute(enableWriteTask);
+        }
+    }
+
+    private final Runnable enableWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            writeRequested.set(false);
+            if (channelKey != null && channelKey.isValid()) {
+                channelKey.interestOps(channelKey.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    };
+
+    private final CommHub.ChannelHandler handler = new CommHub.ChannelHandler() {
+        @Override
+        public void onReady(SelectionKey key) {
+            try {
+                if (key.isValid() && key.isAcceptable()) {
+                    handleAccept();
+                }
+                if (key.isValid() && key.isConnectable()) {
+                    if (channel.finishConnect()) {
+                        onChannelConnected();
+                    }
+                }
+                if (key.isValid() && key.isReadable()) {
+                    handleRead();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    handleWrite();
+                }
+            } catch (IOException e) {
+                logger.info("Connection error: " + e.getMessage());
+                closeChannel();
+                listener.onError(e);
+                if (!server) {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void onClosed() {
+            closeAll();
+        }
+    };
+
+    @Override
+    void open() throws IOException {
+        if (server) {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(address);
+            logger.info("Listening on: " + getLocalPort());
+        } else {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.connect(address);
+        }
+    }
+
+    @Override
+    void register() throws IOException {
+        if (server) {
+            loop.register(serverChannel, SelectionKey.OP_ACCEPT, handler);
+        } else {
+            channelKey = loop.register(channel, 0, handler);
+            if (channel.finishConnect()) {
+                onChannelConnected();
+            } else {
+                channelKey.interestOps(SelectionKey.OP_CONNECT);
+            }
+        }
+    }
+
+    private void handleAccept() throws IOException {
+        SocketChannel accepted = serverChannel.accept();
+        if (accepted == null) {
+            return;
+        }
+        if (channel != null) {
+            logger.info("Client already connected, rejecting: " + accepted.getRemoteAddress());
+            accepted.close();
+            return;
+        }
+        logger.info("Client connected: " + accepted.getRemoteAddress());
+        channel = accepted;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channelKey = loop.register(channel, 0, handler);
+        onChannelConnected();
+    }
+
+    private void handleRead() throws IOException {
+        final ByteBuffer receiveBuffer = loop.getReceiveBuffer();
+        receiveBuffer.clear();
+        final int read = channel.read(receiveBuffer);
+        if (read < 0) {
+            logger.info("Connection closed by remote side");
+            closeChannel();
+            if (!server) {
+                close();
+            }
+            return;
+        }
+        bytesReceived += read;
+        receiveBuffer.flip();
+        if (receiveBuffer.hasRemaining()) {
+            notifyDataReceived(receiveBuffer);
+        }
+    }
+
+    private void handleWrite() throws IOException {
+        synchronized (sendQueue) {
+            while (!sendQueue.isEmpty()) {
+                ByteBuffer buffer = sendQueue.peek();
+                bytesSent += channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // socket buffer full, wait for next OP_WRITE
+                    return;
+                }
+                sendQueue.poll();
+            }
+            channelKey.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void onChannelConnected() {
+        channelKey.interestOps(SelectionKey.OP_READ);
+        synchronized (sendQueue) {
+            connected = true;
+        }
+        listener.onConnected();
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        final boolean wasConnected = connected;
+        final SocketChannel closedChannel = channel;
+        synchronized (sendQueue) {
+            connected = false;
+            sendQueue.clear();
+            channel = null;
+            channelKey = null;
+        }
+        try {
+            closedChannel.close();
+        } catch (IOException e) {
+            logger.info("Closing channel failed: " + e.getMessage());
+        }
+        if (wasConnected) {
+            listener.onDisconnected();
+        }
+    }
+
+    @Override
+    void closeAll() {
+        closeChannel();
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+                serverChannel = null;
+            }
+        } catch (IOException e) {
+            logger.info("Closing interface failed: " + e.getMessage());
+        }
+    }
+}
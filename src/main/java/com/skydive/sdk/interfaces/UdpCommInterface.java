@@ -0,0 +1,320 @@
+package com.skydive.sdk.interfaces;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+
+/**
+ * CommInterface over UDP implemented with non blocking DatagramChannel.
+ * Interface works as a client (sends to host:port) or as a server (listens on port and
+ * serves the peer from which first datagram was received, used by UavSimulator).
+ * Messages sent in a burst (e.g. all packets of signal payload or control tick messages)
+ * are packed into one datagram: sent data is batched and flushed by selector thread
+ * after it handles actual channel events. Message is never split between datagrams,
+ * so lost datagram means only lost whole messages. Received datagram is passed
+ * to ByteBufferListener without copying, dispatcher separates messages.
+ */
+public class UdpCommInterface extends HubCommInterface {
+
+    private static Logger logger = LoggerFactory.getLogger(UdpCommInterface.class);
+
+    // fits in ethernet MTU together with IP and UDP headers
+    public static final int MAX_DATAGRAM_SIZE = 1400;
+
+    // datagrams received at once from one link, so other links are not starved
+    private static final int MAX_READS_PER_EVENT = 16;
+
+    private final InetSocketAddress address;
+    private final boolean server;
+
+    private volatile DatagramChannel channel;
+    private volatile boolean connected;
+
+    // messages waiting for next datagram, guarded by batch
+    private final ByteBuffer batch = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+    private boolean flushScheduled;
+
+    private volatile long datagramsReceived;
+    private volatile long datagramsSent;
+
+    /**
+     * Creates client interface that sends to given host.
+     */
+    public UdpCommInterface(String host, int port) {
+        this(host, port, null);
+    }
+
+    /**
+     * Creates client interface that sends to given host, served by given hub.
+     */
+    public UdpCommInterface(String host, int port, CommHub hub) {
+        super(hub);
+        this.address = new InetSocketAddress(host, port);
+        this.server = false;
+    }
+
+    /**
+     * Creates server interface that listens on given port.
+     * Disconnect drops actual peer, interface keeps listening until close is called.
+     */
+    public UdpCommInterface(int port) {
+        this(port, null);
+    }
+
+    /**
+     * Creates server interface that listens on given port, served by given hub.
+     */
+    public UdpCommInterface(int port, CommHub hub) {
+        super(hub);
+        this.address = new InetSocketAddress(port);
+        this.server = true;
+    }
+
+    @Override
+    public void disconnect() {
+        if (!isStarted()) {
+            return;
+        }
+        if (server) {
+            // drop peer, keep listening
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    disconnectPeer();
+                }
+            });
+        } else {
+            close();
+        }
+    }
+
+    @Override
+    public void send(final byte[] data, final int dataSize) {
+        synchronized (batch) {
+            if (!connected) {
+                logger.debug("Sending when not connected, data dropped");
+                return;
+            }
+            append(ByteBuffer.wrap(data, 0, dataSize));
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Packs buffers into datagrams, each buffer is kept in single datagram.
+     */
+    @Override
+    public void send(final ByteBuffer[] buffers, final int offset, final int length) {
+        synchronized (batch) {
+            if (!connected) {
+                logger.debug("Sending when not connected, data dropped");
+                return;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                append(buffers[i]);
+            }
+            scheduleFlush();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getDatagramsReceived() {
+        return datagramsReceived;
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent;
+    }
+
+    /**
+     * Returns local port, useful when server listens on port 0.
+     */
+    public int getLocalPort() {
+        try {
+            final DatagramChannel channel = this.channel;
+            if (channel != null) {
+                return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            }
+        } catch (IOException e) {
+            logger.info("Can not get local address: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (batch) {
+                flushScheduled = false;
+                flushBatch();
+            }
+        }
+    };
+
+    private final CommHub.ChannelHandler handler = new CommHub.ChannelHandler() {
+        @Override
+        public void onReady(SelectionKey key) {
+            try {
+                handleRead();
+            } catch (PortUnreachableException e) {
+                // remote side not listening (yet), datagrams are lost as on any unreliable link
+                logger.debug("Remote port unreachable");
+            } catch (IOException e) {
+                logger.info("Connection error: " + e.getMessage());
+                listener.onError(e);
+                if (server) {
+                    disconnectPeer();
+                } else {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void onClosed() {
+            closeAll();
+        }
+    };
+
+    @Override
+    void open() throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        if (server) {
+            channel.bind(address);
+            logger.info("Listening on: " + getLocalPort());
+        } else {
+            channel.connect(address);
+        }
+    }
+
+    @Override
+    void register() throws IOException {
+        loop.register(channel, SelectionKey.OP_READ, handler);
+        if (!server) {
+            onPeerConnected();
+        }
+    }
+
+    private void handleRead() throws IOException {
+        final ByteBuffer receiveBuffer = loop.getReceiveBuffer();
+        for (int i = 0; i < MAX_READS_PER_EVENT && channel != null; i++) {
+            receiveBuffer.clear();
+            // connected channel receives only from its peer
+            final SocketAddress peer = channel.receive(receiveBuffer);
+            if (peer == null) {
+                return;
+            }
+            if (!connected) {
+                logger.info("Peer connected: " + peer);
+                channel.connect(peer);
+                onPeerConnected();
+            }
+            datagramsReceived++;
+            bytesReceived += receiveBuffer.position();
+            receiveBuffer.flip();
+            if (receiveBuffer.hasRemaining()) {
+                notifyDataReceived(receiveBuffer);
+            }
+        }
+    }
+
+    private void append(ByteBuffer data) {
+        if (data.remaining() > batch.remaining()) {
+            flushBatch();
+        }
+        if (data.remaining() > batch.capacity()) {
+            writeDatagram(data);
+            return;
+        }
+        batch.put(data);
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled && batch.position() > 0) {
+            flushScheduled = true;
+            loop.submit(flushTask);
+        }
+    }
+
+    private void flushBatch() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        writeDatagram(batch);
+        batch.clear();
+    }
+
+    private void writeDatagram(ByteBuffer datagram) {
+        try {
+            final int written = channel.write(datagram);
+            if (written == 0) {
+                logger.debug("Socket buffer full, datagram dropped");
+                return;
+            }
+            datagramsSent++;
+            bytesSent += written;
+        } catch (PortUnreachableException e) {
+            logger.debug("Remote port unreachable, datagram dropped");
+        } catch (IOException e) {
+            // reported by selector thread on next read
+            logger.info("Write failed: " + e.getMessage());
+        }
+    }
+
+    private void onPeerConnected() {
+        synchronized (batch) {
+            connected = true;
+        }
+        listener.onConnected();
+    }
+
+    private void disconnectPeer() {
+        if (!connected) {
+            return;
+        }
+        synchronized (batch) {
+            connected = false;
+            batch.clear();
+        }
+        try {
+            channel.disconnect();
+        } catch (IOException e) {
+            logger.info("Disconnecting peer failed: " + e.getMessage());
+        }
+        listener.onDisconnected();
+    }
+
+    @Override
+    void closeAll() {
+        if (channel == null) {
+            return;
+        }
+        final boolean wasConnected = connected;
+        final DatagramChannel closedChannel = channel;
+        synchronized (batch) {
+            connected = false;
+            batch.clear();
+            channel = null;
+        }
+        try {
+            closedChannel.close();
+        } catch (IOException e) {
+            logger.info("Closing channel failed: " + e.getMessage());
+        }
+        if (wasConnected) {
+            listener.onDisconnected();
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package com.skydive.sdk.recorder;
+
+import com.skydive.sdk.CommCrc;
+import com.skydive.sdk.CommMessage;
+import com.skydive.sdk.data.AutopilotData;
+import com.skydive.sdk.data.ControlData;
+import com.skydive.sdk.data.DebugData;
+import com.skydive.sdk.data.SignalData;
+import com.skydive.sdk.data.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline decoder of recording made by FlightRecorder, writes fields of all received and sent
+ * messages to columnar files: directory for each message kind and file for each field,
+ * e.g. debug/roll.f32, debug/timestamp.i64, with little endian values of consecutive messages.
+ * Kinds are debug (received control frames, DebugData), control (sent control frames, ControlData),
+ * autopilot_inbound and autopilot_outbound (AutopilotData); signals are only counted.
+ * Timestamp of message is timestamp of chunk with its last byte.
+ *
+ * Traffic of each direction is split into parts of similar size at preamble boundaries: boundary
+ * is start of the first valid frame after split point. Parts are decoded in parallel by fork-join
+ * pool, frames crossing chunk edges are stitched by reading directly from consecutive mapped chunks.
+ * Unlike CommDispatcher, decoder validates every frame by CRC before accepting it, so preamble like
+ * bytes in payload do not break reception.
+ */
+public class CaptureDecoder {
+
+    private static Logger logger = LoggerFactory.getLogger(CaptureDecoder.class);
+
+    public static final int DEFAULT_PART_SIZE = 1024 * 1024;
+
+    private static final Layout DEBUG = new Layout("debug", DebugData.Layout.FIELDS);
+
+    private static final Layout CONTROL = new Layout("control", ControlData.Layout.FIELDS);
+
+    private static final Layout AUTOPILOT_INBOUND = new Layout("autopilot_inbound", AutopilotData.Layout.FIELDS);
+
+    private static final Layout AUTOPILOT_OUTBOUND = AUTOPILOT_INBOUND.rename("autopilot_outbound");
+
+    private static final Layout[] LAYOUTS = {DEBUG, CONTROL, AUTOPILOT_INBOUND, AUTOPILOT_OUTBOUND};
+
+    private final ForkJoinPool pool;
+    private final int partSize;
+
+    public CaptureDecoder() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PART_SIZE);
+    }
+
+    /**
+     * @param partSize approximate size of traffic decoded by single task [B]
+     */
+    public CaptureDecoder(ForkJoinPool pool, int partSize) {
+        this.pool = pool;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Decodes recording name from directory to outputDirectory.
+     */
+    public Result decode(File directory, String name, File outputDirectory) throws IOException {
+        final long startTime = System.nanoTime();
+        final FlightRecordReader reader = new FlightRecordReader(directory, name);
+        final Stream inbound = new Stream(FlightRecorder.Direction.INBOUND);
+        final Stream outbound = new Stream(FlightRecorder.Direction.OUTBOUND);
+        final List<ByteBuffer> segments = new ArrayList<>();
+        while (reader.next()) {
+            if (reader.getSegmentIndex() >= segments.size()) {
+                segments.add(reader.getSegmentBuffer());
+            }
+            final Stream stream = reader.getDirection() == FlightRecorder.Direction.INBOUND ? inbound : outbound;
+            stream.add(segments.size() - 1, reader.getDataPosition(), reader.getData().remaining(), reader.getTimestamp());
+        }
+        final ByteBuffer[] buffers = segments.toArray(new ByteBuffer[segments.size()]);
+        final Part[] inboundParts = inbound.split(buffers, partSize);
+        final Part[] outboundParts = outbound.split(buffers, partSize);
+        final Part[] parts = Arrays.copyOf(inboundParts, inboundParts.length + outboundParts.length);
+        System.arraycopy(outboundParts, 0, parts, inboundParts.length, outboundParts.length);
+
+        if (parts.length > 0) {
+            // find boundaries of all parts, then decode them
+            pool.invoke(new PartsTask(parts, 0, parts.length, true));
+            pool.invoke(new PartsTask(parts, 0, parts.length, false));
+        }
+
+        final Result result = new Result();
+        result.partsCount = parts.length;
+        result.bytesCount = inbound.bytesCount + outbound.bytesCount;
+        for (Part part : parts) {
+            result.signalsCount += part.signalsCount;
+            result.crcErrorsCount += part.crcErrorsCount;
+        }
+        for (int i = 0; i < LAYOUTS.length; i++) {
+            final List<Columns> columns = new ArrayList<>();
+            for (Part part : parts) {
+                if (part.columns[i] != null) {
+                    columns.add(part.columns[i]);
+                }
+            }
+            result.messagesCount[i] = write(LAYOUTS[i], columns, outputDirectory);
+        }
+        result.duration = System.nanoTime() - startTime;
+        logger.info("Capture " + name + " decoded: " + result);
+        return result;
+    }
+
+    private static long write(Layout layout, List<Columns> parts, File outputDirectory) throws IOException {
+        final File directory = new File(outputDirectory, layout.name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        long count = 0;
+        for (Columns columns : parts) {
+            count += columns.count;
+        }
+        for (int field = -1; field < layout.fields.size(); field++) {
+            final String fileName = field < 0 ? "timestamp." + suffix(WireFormat.Type.I64)
+                    : layout.fields.get(field).getName() + "." + suffix(layout.fields.get(field).getType());
+            try (FileOutputStream output = new FileOutputStream(new File(directory, fileName))) {
+                for (Columns columns : parts) {
+                    final Column column = field < 0 ? columns.timestamps : columns.fields[field];
+                    output.write(column.data, 0, column.size);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Summary of decoding.
+     */
+    public static class Result {
+        private final long[] messagesCount = new long[LAYOUTS.length];
+        private long signalsCount;
+        private long crcErrorsCount;
+        private long bytesCount;
+        private int partsCount;
+        private long duration;
+
+        public long getDebugCount() {
+            return messagesCount[0];
+        }
+
+        public long getControlCount() {
+            return messagesCount[1];
+        }
+
+        public long getAutopilotInboundCount() {
+            return messagesCount[2];
+        }
+
+        public long getAutopilotOutboundCount() {
+            return messagesCount[3];
+        }
+
+        public long getSignalsCount() {
+            return signalsCount;
+        }
+
+        /**
+         * Number of frames with valid preamble and wrong CRC.
+         */
+        public long getCrcErrorsCount() {
+            return crcErrorsCount;
+        }
+
+        public long getBytesCount() {
+            return bytesCount;
+        }
+
+        public int getPartsCount() {
+            return partsCount;
+        }
+
+        /**
+         * Duration of decoding [ns].
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return "Result:[ debug: " + messagesCount[0] + ", control: " + messagesCount[1]
+                    + ", autopilot in: " + messagesCount[2] + ", autopilot out: " + messagesCount[3]
+                    + ", signals: " + signalsCount + ", CRC errors: " + crcErrorsCount
+                    + ", bytes: " + bytesCount + ", parts: " + partsCount
+                    + ", duration: " + duration / 1000000 + " ms ]";
+        }
+    }
+
+    private static String suffix(WireFormat.Type type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Fields of message payload, see Layout of data structures.
+     */
+    private static class Layout {
+        private final String name;
+        private final List<WireFormat.Field> fields;
+
+        Layout(String name, List<WireFormat.Field> fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+
+        Layout rename(String name) {
+            return new Layout(name, fields);
+        }
+    }
+
+    /**
+     * Growable column of little endian values.
+     */
+    private static class Column {
+        private byte[] data = new byte[256];
+        private int size;
+
+        void append(byte[] src, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(src, offset, data, size, length);
+            size += length;
+        }
+
+        void appendLong(long value) {
+            ensureCapacity(8);
+            for (int i = 0; i < 8; i++) {
+                data[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+            }
+        }
+    }
+
+    /**
+     * Decoded messages of one kind from one part.
+     */
+    private static class Columns {
+        private final Layout layout;
+        private final Column timestamps = new Column();
+        private final Column[] fields;
+        private long count;
+
+        Columns(Layout layout) {
+            this.layout = layout;
+            this.fields = new Column[layout.fields.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new Column();
+            }
+        }
+
+        void append(long timestamp, byte[] payload) {
+            timestamps.appendLong(timestamp);
+            for (int i = 0; i < fields.length; i++) {
+                final WireFormat.Field field = layout.fields.get(i);
+                fields[i].append(payload, field.getOffset(), field.getType().getSize());
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Recorded chunks of one direction, as logical stream of bytes.
+     */
+    private static class Stream {
+        private final FlightRecorder.Direction direction;
+        private int[] segments = new int[1024];
+        private int[] positions = new int[1024];
+        private int[] lengths = new int[1024];
+        private long[] timestamps = new long[1024];
+        private int count;
+        private long bytesCount;
+
+        Stream(FlightRecorder.Direction direction) {
+            this.direction = direction;
+        }
+
+        void add(int segment, int position, int length, long timestamp) {
+            if (count == segments.length) {
+                segments = Arrays.copyOf(segments, count * 2);
+                positions = Arrays.copyOf(positions, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+            }
+            segments[count] = segment;
+            positions[count] = position;
+            lengths[count] = length;
+            timestamps[count] = timestamp;
+            bytesCount += length;
+            count++;
+        }
+
+        /**
+         * Splits stream into parts starting at the first chunk after every partSize bytes.
+         */
+        Part[] split(ByteBuffer[] buffers, int partSize) {
+            final List<Part> result = new ArrayList<>();
+            long bytes = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || bytes >= partSize) {
+                    result.add(new Part(this, buffers, i));
+                    bytes = 0;
+                }
+                bytes += lengths[i];
+            }
+            final Part[] parts = result.toArray(new Part[result.size()]);
+            for (int i = 0; i + 1 < parts.length; i++) {
+                parts[i].next = parts[i + 1];
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Part of stream decoded by single task, from its start (boundary found in the first pass)
+     * up to start of the next part.
+     */
+    private static class Part {
+        private final Stream stream;
+        private final ByteBuffer[] buffers;
+        private final int firstChunk;
+        private Part next;
+
+        // start of the first frame: chunk and position in chunk, chunk count when there is none
+        private int startChunk;
+        private int startPosition;
+
+        private final Columns[] columns = new Columns[LAYOUTS.length];
+        private long signalsCount;
+        private long crcErrorsCount;
+
+        // cursor
+        private int chunk;
+        private int position;
+        private final byte[] frame = new byte[CommMessage.MAX_MESSAGE_SIZE];
+
+        Part(Stream stream, ByteBuffer[] buffers, int firstChunk) {
+            this.stream = stream;
+            this.buffers = buffers;
+            this.firstChunk = firstChunk;
+        }
+
+        void findStart() {
+            chunk = firstChunk;
+            position = 0;
+            while (findPreamble(stream.count, 0)) {
+                final int preambleChunk = chunk;
+                final int preamblePosition = position;
+                final CommMessage.MessageType type = readPreamble();
+                if (readFrame(type) >= 0) {
+                    startChunk = preambleChunk;
+                    startPosition = preamblePosition;
+                    return;
+                }
+                // not valid frame, continue search after the preamble
+                chunk = preambleChunk;
+                position = preamblePosition;
+                advance(1);
+            }
+            startChunk = stream.count;
+            startPosition = 0;
+        }
+
+        void decode() {
+            final int endChunk = next != null ? next.startChunk : stream.count;
+            final int endPosition = next != null ? next.startPosition : 0;
+            chunk = startChunk;
+            position = startPosition;
+            while (findPreamble(endChunk, endPosition)) {
+                final int preambleChunk = chunk;
+                final int preamblePosition = position;
+                final CommMessage.MessageType type = readPreamble();
+                final int size = readFrame(type);
+                if (size >= 0) {
+                    // chunk of cursor contains the last byte of frame
+                    onFrame(type, stream.timestamps[position > 0 ? chunk : chunk - 1]);
+                } else {
+                    if (size == -1) {
+                        crcErrorsCount++;
+                    }
+                    chunk = preambleChunk;
+                    position = preamblePosition;
+                    advance(1);
+                }
+            }
+        }
+
+        private void onFrame(CommMessage.MessageType type, long timestamp) {
+            final boolean inbound = stream.direction == FlightRecorder.Direction.INBOUND;
+            final int layout;
+            switch (type) {
+                case CONTROL:
+                    layout = inbound ? 0 : 1;
+                    break;
+                case AUTOPILOT:
+                    layout = inbound ? 2 : 3;
+                    break;
+                default:
+                    signalsCount++;
+                    return;
+            }
+            if (columns[layout] == null) {
+                columns[layout] = new Columns(LAYOUTS[layout]);
+            }
+            columns[layout].append(timestamp, frame);
+        }
+
+        /**
+         * Moves cursor to the first preamble starting before end, returns false when there is none.
+         */
+        private boolean findPreamble(int endChunk, int endPosition) {
+            while (chunk <= endChunk && chunk < stream.count) {
+                final ByteBuffer buffer = buffers[stream.segments[chunk]];
+                final int base = stream.positions[chunk];
+                final int limit = chunk == endChunk ? endPosition : stream.lengths[chunk];
+                for (; position < limit; position++) {
+                    final byte b = buffer.get(base + position);
+                    if ((b == '$' || b == '%' || b == '^') && isPreamble()) {
+                        return true;
+                    }
+                }
+                if (chunk == endChunk) {
+                    return false;
+                }
+                chunk++;
+                position = 0;
+            }
+            return false;
+        }
+
+        private boolean isPreamble() {
+            final byte b = byteAt(0);
+            return CommMessage.getPreambleTypeByChar(b) != CommMessage.MessageType.EMPTY
+                    && byteAt(1) == b && byteAt(2) == b && byteAt(3) == 0;
+        }
+
+        private CommMessage.MessageType readPreamble() {
+            final CommMessage.MessageType type = CommMessage.getPreambleTypeByChar(byteAt(0));
+            advance(CommMessage.PREAMBLE_SIZE);
+            return type;
+        }
+
+        /**
+         * Reads payload and CRC of frame to frame buffer, returns payload size,
+         * -1 for wrong CRC and -2 when stream ends before end of frame.
+         */
+        private int readFrame(CommMessage.MessageType type) {
+            int size = CommMessage.getPayloadSizeByType(type);
+            if (!read(0, size)) {
+                return -2;
+            }
+            if (type == CommMessage.MessageType.SIGNAL && SignalData.hasPayload(SignalData.parseCommand(frame))) {
+                if (!read(size, CommMessage.SIGNAL_DATA_PAYLOAD_SIZE)) {
+                    return -2;
+                }
+                size += CommMessage.SIGNAL_DATA_PAYLOAD_SIZE;
+            }
+            if (!read(size, CommMessage.CRC_SIZE)) {
+                return -2;
+            }
+            final short crc = CommCrc.computeCrc16(frame, 0, size);
+            if (frame[size] != (byte) (crc & 0xff) || frame[size + 1] != (byte) ((crc >> 8) & 0xff)) {
+                return -1;
+            }
+            return size;
+        }
+
+        private boolean read(int offset, int length) {
+            while (length > 0) {
+                if (chunk >= stream.count) {
+                    return false;
+                }
+                final ByteBuffer buffer = buffers[stream.segments[chunk]];
+                final int base = stream.positions[chunk] + position;
+                final int count = Math.min(length, stream.lengths[chunk] - position);
+                for (int i = 0; i < count; i++) {
+                    frame[offset++] = buffer.get(base + i);
+                }
+                length -= count;
+                advance(count);
+            }
+            return true;
+        }
+
+        private byte byteAt(int offset) {
+            int c = chunk;
+            int p = position + offset;
+            while (c < stream.count && p >= stream.lengths[c]) {
+                p -= stream.lengths[c];
+                c++;
+            }
+            return c < stream.count ? buffers[stream.segments[c]].get(stream.positions[c] + p) : -1;
+        }
+
+        private void advance(int count) {
+            position += count;
+            while (chunk < stream.count && position >= stream.lengths[chunk]) {
+                position -= stream.lengths[chunk];
+                chunk++;
+            }
+        }
+    }
+
+    private static class PartsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Part[] parts;
+        private final int from;
+        private final int to;
+        private final boolean findStart;
+
+        PartsTask(Part[] parts, int from, int to, boolean findStart) {
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.findStart = findStart;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (findStart) {
+                    parts[from].findStart();
+                } else {
+                    parts[from].decode();
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new PartsTask(parts, from, middle, findStart),
+                    new PartsTask(parts, middle, to, findStart));
+        }
+    }
+}
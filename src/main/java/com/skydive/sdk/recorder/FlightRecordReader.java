@@ -0,0 +1,243 @@
+package com.skydive.sdk.recorder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sequential reader of recording made by FlightRecorder, iterates records of all segments in order
+ * of recording. Seeking by timestamp uses sparse time index of segments, so only small part
+ * of recording is scanned. Segments are mapped read only, one at a time.
+ * Not thread safe.
+ */
+public class FlightRecordReader {
+
+    private static Logger logger = LoggerFactory.getLogger(FlightRecordReader.class);
+
+    private final List<SegmentInfo> segments;
+
+    private int segmentIndex = -1;
+    private ByteBuffer buffer;
+
+    // actual record
+    private FlightRecorder.Direction direction;
+    private long timestamp;
+    private ByteBuffer data;
+
+    public FlightRecordReader(File directory, String name) throws IOException {
+        this.segments = readSegments(directory, name);
+        if (segments.isEmpty()) {
+            throw new IOException("No recording " + name + " in " + directory);
+        }
+        openSegment(0);
+    }
+
+    /**
+     * Moves to the next record, returns false at the end of recording.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (buffer.remaining() >= FlightRecorder.RECORD_HEADER_SIZE) {
+                final int position = buffer.position();
+                final int length = buffer.getInt(position);
+                if (length > 0 && position + FlightRecorder.RECORD_HEADER_SIZE + length <= buffer.limit()) {
+                    direction = FlightRecorder.Direction.values()[buffer.get(position + 4)];
+                    timestamp = buffer.getLong(position + 5);
+                    buffer.position(position + FlightRecorder.RECORD_HEADER_SIZE);
+                    data = buffer.slice();
+                    data.limit(length);
+                    buffer.position(position + FlightRecorder.RECORD_HEADER_SIZE + length);
+                    return true;
+                }
+            }
+            if (segmentIndex + 1 >= segments.size()) {
+                data = null;
+                return false;
+            }
+            openSegment(segmentIndex + 1);
+        }
+    }
+
+    /**
+     * Moves before the first record with timestamp not less than given one,
+     * so it is returned by the next call of next.
+     */
+    public void seek(long timestamp) throws IOException {
+        int index = 0;
+        for (int i = 1; i < segments.size(); i++) {
+            if (segments.get(i).firstTimestamp <= timestamp) {
+                index = i;
+            }
+        }
+        openSegment(index);
+        // start from the last index entry before timestamp
+        final SegmentInfo segment = segments.get(index);
+        int position = segment.dataOffset;
+        for (int i = 0; i < segment.indexCapacity; i++) {
+            final int entry = FlightRecorder.HEADER_SIZE + i * FlightRecorder.INDEX_ENTRY_SIZE;
+            final int entryPosition = buffer.getInt(entry + 8);
+            if (entryPosition == 0 || buffer.getLong(entry) >= timestamp) {
+                break;
+            }
+            position = entryPosition;
+        }
+        buffer.position(position);
+        // scan to the record
+        while (true) {
+            final int recordPosition = buffer.position();
+            if (!next()) {
+                return;
+            }
+            if (this.timestamp >= timestamp) {
+                if (segmentIndex == index) {
+                    buffer.position(recordPosition);
+                } else {
+                    // record is the first one of the next segment
+                    buffer.position(segments.get(segmentIndex).dataOffset);
+                }
+                data = null;
+                return;
+            }
+        }
+    }
+
+    public FlightRecorder.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Timestamp of actual record, time of scheduler of recorder [ns].
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Payload of actual record, read only view of mapped segment valid until the next call of next or seek.
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * Mapped actual segment, payload of actual record starts at getDataPosition.
+     */
+    ByteBuffer getSegmentBuffer() {
+        return buffer;
+    }
+
+    int getDataPosition() {
+        return buffer.position() - data.limit();
+    }
+
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * Wall time [ms] of recording start.
+     */
+    public long getStartWallTime() {
+        return segments.get(0).baseWallTime;
+    }
+
+    /**
+     * Scheduler time [ns] of recording start, corresponds to getStartWallTime.
+     */
+    public long getStartTime() {
+        return segments.get(0).baseTime;
+    }
+
+    private void openSegment(int index) throws IOException {
+        final SegmentInfo segment = segments.get(index);
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+            final MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.position(segment.dataOffset);
+            buffer = mapped;
+        }
+        segmentIndex = index;
+    }
+
+    private static List<SegmentInfo> readSegments(File directory, final String name) throws IOException {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return fileName.startsWith(name + "_") && fileName.endsWith(FlightRecorder.SEGMENT_SUFFIX);
+            }
+        });
+        final List<SegmentInfo> result = new ArrayList<>();
+        if (files == null) {
+            return result;
+        }
+        for (File file : files) {
+            final SegmentInfo segment = readSegment(file);
+            if (segment != null) {
+                result.add(segment);
+            }
+        }
+        Collections.sort(result, new Comparator<SegmentInfo>() {
+            @Override
+            public int compare(SegmentInfo first, SegmentInfo second) {
+                return Integer.compare(first.sequence, second.sequence);
+            }
+        });
+        return result;
+    }
+
+    private static SegmentInfo readSegment(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < FlightRecorder.HEADER_SIZE) {
+                return null;
+            }
+            final ByteBuffer header = ByteBuffer.allocate(FlightRecorder.HEADER_SIZE + FlightRecorder.INDEX_ENTRY_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            raf.getChannel().read(header, 0);
+            if (header.getInt(0) != FlightRecorder.MAGIC) {
+                // segment prepared, but never used
+                return null;
+            }
+            if (header.getInt(4) != FlightRecorder.VERSION) {
+                logger.warn("Unsupported version of segment: " + file);
+                return null;
+            }
+            final SegmentInfo segment = new SegmentInfo();
+            segment.file = file;
+            segment.sequence = header.getInt(8);
+            segment.indexCapacity = header.getInt(12);
+            segment.dataOffset = header.getInt(16);
+            segment.baseTime = header.getLong(24);
+            segment.baseWallTime = header.getLong(32);
+            // the first index entry is the first record of segment
+            segment.firstTimestamp = header.getInt(FlightRecorder.HEADER_SIZE + 8) != 0 ?
+                    header.getLong(FlightRecorder.HEADER_SIZE) : Long.MAX_VALUE;
+            return segment;
+        }
+    }
+
+    private static class SegmentInfo {
+        File file;
+        int sequence;
+        int indexCapacity;
+        int dataOffset;
+        long baseTime;
+        long baseWallTime;
+        long firstTimestamp;
+    }
+}
@@ -0,0 +1,401 @@
+package com.skydive.sdk.recorder;
+
+import com.skydive.sdk.CommScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Recorder of raw link traffic, appends every inbound and outbound chunk of bytes with timestamp
+ * of scheduler [ns] to memory mapped segment files name_000000.rec, name_000001.rec... in directory.
+ * Recording is a copy to mapped memory, no system call is made on calling thread. The next segment
+ * is created and mapped in advance on I/O executor, so segments are rolled without stopping.
+ * When it is not ready yet, chunks are dropped until it is, segment is never created on recording thread.
+ *
+ * Segment layout (little endian):
+ * - header: magic, version, sequence, index capacity, data offset, base time [ns], base wall time [ms],
+ *   written when segment becomes active, so sequence gives order of segments
+ * - sparse time index: (timestamp, data position) of the first record starting in every
+ *   INDEX_INTERVAL bytes of data, unused entries are zeroed
+ * - records: payload length, direction, timestamp, payload; zero length ends the segment
+ * Record length is written last, so segment can be read up to the last complete record
+ * even when process was killed during recording. See FlightRecordReader.
+ */
+public class FlightRecorder {
+
+    private static Logger logger = LoggerFactory.getLogger(FlightRecorder.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    static final int MAGIC = 0x52464453; // "SDFR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int INDEX_INTERVAL = 64 * 1024;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final String SEGMENT_SUFFIX = ".rec";
+    private static final int PAGE_SIZE = 4096;
+
+    public enum Direction {
+        INBOUND,
+        OUTBOUND
+    }
+
+    private final File directory;
+    private final String name;
+    private final int segmentSize;
+    private final CommScheduler scheduler;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+
+    // guarded by this
+    private Segment segment;
+    private Segment nextSegment;
+    private boolean preparing;
+    private int filesCount;
+    private boolean closed;
+
+    private long recordsCount;
+    private long bytesCount;
+    private long droppedCount;
+    private int segmentsCount;
+    private long notReadyDroppedCount;
+
+    public FlightRecorder(File directory, String name) throws IOException {
+        this(directory, name, DEFAULT_SEGMENT_SIZE, CommScheduler.getDefault());
+    }
+
+    /**
+     * Segments are prepared on own I/O thread of recorder, stopped by close.
+     */
+    public FlightRecorder(File directory, String name, int segmentSize, CommScheduler scheduler) throws IOException {
+        this(directory, name, segmentSize, scheduler, null);
+    }
+
+    /**
+     * @param name name of recording, has to be unique in directory
+     * @param segmentSize size of segment file [B]
+     * @param scheduler clock of timestamps
+     * @param executor executor of segment file I/O, must not run on recording thread,
+     *                 null creates own I/O thread of recorder
+     */
+    public FlightRecorder(File directory, String name, int segmentSize, CommScheduler scheduler,
+                          Executor executor) throws IOException {
+        if (segmentSize < HEADER_SIZE + INDEX_ENTRY_SIZE + INDEX_INTERVAL) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        if (new File(directory, getSegmentName(name, 0)).exists()) {
+            throw new IOException("Recording " + name + " already exists in " + directory);
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.scheduler = scheduler;
+        if (executor != null) {
+            this.ownExecutor = null;
+            this.executor = executor;
+        } else {
+            this.ownExecutor = Executors.newSingleThreadExecutor(createThreadFactory(name));
+            this.executor = ownExecutor;
+        }
+        this.segment = createSegment(filesCount++);
+        this.segment.activate(segmentsCount++);
+        prepareNextSegment();
+    }
+
+    public void record(Direction direction, byte[] data, int offset, int length) {
+        synchronized (this) {
+            final ByteBuffer buffer = startRecord(length);
+            if (buffer == null) {
+                return;
+            }
+            final int position = buffer.position();
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.put(data, offset, length);
+            finishRecord(buffer, position, direction, length);
+        }
+    }
+
+    /**
+     * Records remaining bytes of data, position of data is not changed.
+     */
+    public void record(Direction direction, ByteBuffer data) {
+        final int dataPosition = data.position();
+        final int length = data.remaining();
+        synchronized (this) {
+            final ByteBuffer buffer = startRecord(length);
+            if (buffer == null) {
+                return;
+            }
+            final int position = buffer.position();
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.put(data);
+            data.position(dataPosition);
+            finishRecord(buffer, position, direction, length);
+        }
+    }
+
+    /**
+     * Records remaining bytes of length buffers starting from offset as single chunk,
+     * positions of buffers are not changed.
+     */
+    public void record(Direction direction, ByteBuffer[] buffers, int offset, int length) {
+        int dataSize = 0;
+        for (int i = offset; i < offset + length; i++) {
+            dataSize += buffers[i].remaining();
+        }
+        synchronized (this) {
+            final ByteBuffer buffer = startRecord(dataSize);
+            if (buffer == null) {
+                return;
+            }
+            final int position = buffer.position();
+            buffer.position(position + RECORD_HEADER_SIZE);
+            for (int i = offset; i < offset + length; i++) {
+                final int bufferPosition = buffers[i].position();
+                buffer.put(buffers[i]);
+                buffers[i].position(bufferPosition);
+            }
+            finishRecord(buffer, position, direction, dataSize);
+        }
+    }
+
+    /**
+     * Flushes mapped segments to files and stops recording.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment.close();
+        if (nextSegment != null) {
+            nextSegment.delete();
+            nextSegment = null;
+        }
+        if (ownExecutor != null) {
+            // segments being closed or prepared are finished first
+            ownExecutor.shutdown();
+        }
+        logger.info("Flight recorder " + name + " closed, records: " + recordsCount + ", bytes: " + bytesCount
+                + ", segments: " + segmentsCount + ", dropped: " + droppedCount);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getRecordsCount() {
+        return recordsCount;
+    }
+
+    public synchronized long getBytesCount() {
+        return bytesCount;
+    }
+
+    /**
+     * Number of chunks not recorded because they did not fit into segment or next segment was not ready.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public synchronized int getSegmentsCount() {
+        return segmentsCount;
+    }
+
+    /**
+     * Number of chunks dropped because next segment was not prepared yet, included in getDroppedCount.
+     */
+    public synchronized long getNotReadyDroppedCount() {
+        return notReadyDroppedCount;
+    }
+
+    static String getSegmentName(String name, int fileNumber) {
+        return String.format(Locale.US, "%s_%06d%s", name, fileNumber, SEGMENT_SUFFIX);
+    }
+
+    private ByteBuffer startRecord(int length) {
+        if (closed || length == 0) {
+            // zero length ends segment, empty chunk is not recorded
+            return null;
+        }
+        final int recordSize = RECORD_HEADER_SIZE + length;
+        if (recordSize > segment.buffer.remaining()) {
+            if (recordSize > segment.buffer.limit() - segment.dataOffset) {
+                droppedCount++;
+                return null;
+            }
+            if (!roll()) {
+                droppedCount++;
+                notReadyDroppedCount++;
+                return null;
+            }
+        }
+        return segment.buffer;
+    }
+
+    private void finishRecord(ByteBuffer buffer, int position, Direction direction, int length) {
+        final long timestamp = scheduler.nanoTime();
+        buffer.put(position + 4, (byte) direction.ordinal());
+        buffer.putLong(position + 5, timestamp);
+        buffer.putInt(position, length);
+        segment.index(timestamp, position);
+        recordsCount++;
+        bytesCount += length;
+    }
+
+    private boolean roll() {
+        if (nextSegment == null) {
+            // retried when preparation failed
+            prepareNextSegment();
+            return false;
+        }
+        final Segment previous = segment;
+        segment = nextSegment;
+        nextSegment = null;
+        segment.activate(segmentsCount++);
+        prepareNextSegment();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    previous.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            previous.close();
+        }
+        return true;
+    }
+
+    private void prepareNextSegment() {
+        if (preparing || nextSegment != null || closed) {
+            return;
+        }
+        preparing = true;
+        final int fileNumber = filesCount++;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Segment prepared = null;
+                    try {
+                        prepared = createSegment(fileNumber);
+                    } catch (IOException e) {
+                        logger.warn("Could not create segment of flight recorder " + name + ": " + e.getMessage());
+                    }
+                    synchronized (FlightRecorder.this) {
+                        preparing = false;
+                        if (prepared == null) {
+                            return;
+                        }
+                        if (closed) {
+                            prepared.delete();
+                        } else {
+                            nextSegment = prepared;
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            preparing = false;
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "FlightRecorder_" + name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private Segment createSegment(int fileNumber) throws IOException {
+        final File file = new File(directory, getSegmentName(name, fileNumber));
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        // touch every page, so recording thread does not wait for page faults
+        for (int i = 0; i < segmentSize; i += PAGE_SIZE) {
+            buffer.put(i, (byte) 0);
+        }
+        return new Segment(file, buffer);
+    }
+
+    private class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final int indexCapacity;
+        private final int dataOffset;
+        private int indexCount;
+        private long nextIndexPosition;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+            this.indexCapacity = (segmentSize - HEADER_SIZE) / INDEX_INTERVAL + 1;
+            this.dataOffset = HEADER_SIZE + indexCapacity * INDEX_ENTRY_SIZE;
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void activate(int sequence) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, sequence);
+            buffer.putInt(12, indexCapacity);
+            buffer.putInt(16, dataOffset);
+            buffer.putLong(24, scheduler.nanoTime());
+            buffer.putLong(32, System.currentTimeMillis());
+            buffer.position(dataOffset);
+            // last record header has to fit, so zero length terminator is always present
+            buffer.limit(segmentSize - 4);
+            nextIndexPosition = dataOffset;
+        }
+
+        void index(long timestamp, int position) {
+            if (position >= nextIndexPosition && indexCount < indexCapacity) {
+                final int entry = HEADER_SIZE + indexCount * INDEX_ENTRY_SIZE;
+                buffer.putLong(entry, timestamp);
+                buffer.putInt(entry + 8, position);
+                indexCount++;
+                nextIndexPosition = dataOffset + (long) (position - dataOffset) / INDEX_INTERVAL * INDEX_INTERVAL + INDEX_INTERVAL;
+            }
+        }
+
+        void close() {
+            buffer.force();
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                logger.debug("Could not delete unused segment: " + file);
+            }
+        }
+    }
+}
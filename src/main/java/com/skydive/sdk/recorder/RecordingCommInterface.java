@@ -0,0 +1,80 @@
+package com.skydive.sdk.recorder;
+
+import com.skydive.sdk.CommInterface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * CommInterface passing all calls to another interface and recording its traffic with FlightRecorder:
+ * data received from the interface before it is passed to listener and data sent before
+ * it is passed to the interface. Recorder is not closed by the interface.
+ */
+public class RecordingCommInterface extends CommInterface {
+
+    private final CommInterface commInterface;
+    private final FlightRecorder recorder;
+
+    public RecordingCommInterface(CommInterface commInterface, FlightRecorder recorder) {
+        this.commInterface = commInterface;
+        this.recorder = recorder;
+        this.commInterface.setListener(new CommInterface.ByteBufferListener() {
+            @Override
+            public void onDataReceived(ByteBuffer data) {
+                RecordingCommInterface.this.recorder.record(FlightRecorder.Direction.INBOUND, data);
+                notifyDataReceived(data);
+            }
+
+            @Override
+            public void onDataReceived(byte[] data, int dataSize) {
+                RecordingCommInterface.this.recorder.record(FlightRecorder.Direction.INBOUND, data, 0, dataSize);
+                listener.onDataReceived(data, dataSize);
+            }
+
+            @Override
+            public void onConnected() {
+                listener.onConnected();
+            }
+
+            @Override
+            public void onDisconnected() {
+                listener.onDisconnected();
+            }
+
+            @Override
+            public void onError(IOException e) {
+                listener.onError(e);
+            }
+        });
+    }
+
+    @Override
+    public void connect() {
+        commInterface.connect();
+    }
+
+    @Override
+    public void disconnect() {
+        commInterface.disconnect();
+    }
+
+    @Override
+    public void send(byte[] data, int dataSize) {
+        recorder.record(FlightRecorder.Direction.OUTBOUND, data, 0, dataSize);
+        commInterface.send(data, dataSize);
+    }
+
+    @Override
+    public void send(ByteBuffer[] buffers, int offset, int length) {
+        recorder.record(FlightRecorder.Direction.OUTBOUND, buffers, offset, length);
+        commInterface.send(buffers, offset, length);
+    }
+
+    public CommInterface getCommInterface() {
+        return commInterface;
+    }
+
+    public FlightRecorder getRecorder() {
+        return recorder;
+    }
+}
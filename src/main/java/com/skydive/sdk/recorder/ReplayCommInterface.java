@@ -0,0 +1,192 @@
+package com.skydive.sdk.recorder;
+
+import com.skydive.sdk.CommInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CommInterface playing back inbound traffic of recording made by FlightRecorder, e.g. to connect
+ * fresh UavManager to field capture for benchmarks and regression tests of communication.
+ * Recorded chunks are passed to listener directly from mapped segments, without copying.
+ * Data sent by listener is dropped, recorded outbound traffic is only counted.
+ * Playback runs on its own thread at given speed: 1.0 for real time, N for N times faster
+ * or MAX_SPEED for as fast as possible. User actions (e.g. starting flight loop) of recorded
+ * session have to be repeated by listener of UavManager; at high speed they may be too late
+ * for data that follows them, so such sessions should be replayed in real time.
+ * When recording ends, listener is notified about disconnection.
+ */
+public class ReplayCommInterface extends CommInterface {
+
+    private static Logger logger = LoggerFactory.getLogger(ReplayCommInterface.class);
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final FlightRecordReader reader;
+    private final double speed;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    private volatile long inboundCount;
+    private volatile long inboundBytes;
+    private volatile long outboundCount;
+    private final AtomicLong droppedSendsCount = new AtomicLong(0);
+    private volatile long failuresCount;
+    private volatile long duration; // [ns]
+
+    public ReplayCommInterface(FlightRecordReader reader, double speed) {
+        if (!(speed > 0.0)) {
+            throw new IllegalArgumentException("Speed has to be positive: " + speed);
+        }
+        this.reader = reader;
+        this.speed = speed;
+    }
+
+    @Override
+    public synchronized void connect() {
+        if (thread != null) {
+            logger.warn("Replay already started");
+            return;
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, "replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops playback, listener is notified by playback thread when it stops.
+     */
+    @Override
+    public void disconnect() {
+        running = false;
+        final Thread playbackThread = thread;
+        if (playbackThread != null) {
+            LockSupport.unpark(playbackThread);
+        }
+    }
+
+    @Override
+    public void send(byte[] data, int dataSize) {
+        droppedSendsCount.incrementAndGet();
+    }
+
+    @Override
+    public void send(ByteBuffer[] buffers, int offset, int length) {
+        droppedSendsCount.incrementAndGet();
+    }
+
+    /**
+     * Waits until whole recording is played back or interface is disconnected.
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Number of inbound chunks passed to listener.
+     */
+    public long getInboundCount() {
+        return inboundCount;
+    }
+
+    public long getInboundBytes() {
+        return inboundBytes;
+    }
+
+    /**
+     * Number of outbound chunks of recording, that were skipped.
+     */
+    public long getOutboundCount() {
+        return outboundCount;
+    }
+
+    /**
+     * Number of sends of listener, that were dropped.
+     */
+    public long getDroppedSendsCount() {
+        return droppedSendsCount.get();
+    }
+
+    /**
+     * Number of inbound chunks, which handling by listener threw exception.
+     */
+    public long getFailuresCount() {
+        return failuresCount;
+    }
+
+    /**
+     * Duration of playback [ns], available when finished.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    private void replay() {
+        final long startTime = System.nanoTime();
+        long firstTimestamp = Long.MIN_VALUE;
+        listener.onConnected();
+        try {
+            while (running && reader.next()) {
+                if (reader.getDirection() == FlightRecorder.Direction.OUTBOUND) {
+                    outboundCount++;
+                    continue;
+                }
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = reader.getTimestamp();
+                }
+                if (speed != MAX_SPEED) {
+                    final long deadline = startTime + (long) ((reader.getTimestamp() - firstTimestamp) / speed);
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0 && running) {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                }
+                final ByteBuffer data = reader.getData();
+                inboundBytes += data.remaining();
+                inboundCount++;
+                try {
+                    notifyDataReceived(data);
+                } catch (RuntimeException e) {
+                    // recorded session continues, as it did on real link
+                    failuresCount++;
+                    logger.warn("Handling of replayed data failed", e);
+                }
+            }
+        } catch (IOException e) {
+            logger.info("Replay failed: " + e.getMessage());
+            duration = System.nanoTime() - startTime;
+            running = false;
+            finished.countDown();
+            listener.onError(e);
+            return;
+        }
+        duration = System.nanoTime() - startTime;
+        running = false;
+        logger.info("Replay finished, inbound chunks: " + inboundCount + ", bytes: " + inboundBytes
+                + ", failures: " + failuresCount + ", duration: " + duration / 1000000 + " ms");
+        finished.countDown();
+        listener.onDisconnected();
+    }
+}
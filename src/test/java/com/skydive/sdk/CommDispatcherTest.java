@@ -0,0 +1,194 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.DebugData;
+import com.skydive.sdk.data.RouteContainer;
+import com.skydive.sdk.data.SignalData;
+import com.skydive.sdk.events.CommEvent;
+import com.skydive.sdk.events.MessageEvent;
+import com.skydive.sdk.events.SignalPayloadEvent;
+import com.skydive.sdk.events.SignalPayloadIncompleteEvent;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommDispatcherTest {
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int MEASURED_ITERATIONS = 100000;
+
+    private int messagesCount;
+
+    @Test
+    public void reusableFramesReceiveWithoutAllocation() {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        final CommDispatcher dispatcher = new CommDispatcher(new CommDispatcher.CommDispatcherListener() {
+            @Override
+            public void handleCommEvent(CommEvent event) {
+                if (event instanceof MessageEvent) {
+                    messagesCount++;
+                }
+            }
+        });
+        dispatcher.setReusableFrames(true);
+
+        final byte[] debugFrame = createDebugData().getMessage().getByteArray();
+        final byte[] signalFrame = new SignalData(SignalData.Command.PING_VALUE, 5).getMessage().getByteArray();
+        final byte[] stream = new byte[debugFrame.length + signalFrame.length];
+        System.arraycopy(debugFrame, 0, stream, 0, debugFrame.length);
+        System.arraycopy(signalFrame, 0, stream, debugFrame.length, signalFrame.length);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            dispatcher.proceedReceiving(stream, stream.length);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            dispatcher.proceedReceiving(stream, stream.length);
+        }
+        final long after = bean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, dispatcher.getFailedReceptionCounter());
+        assertEquals(2 * (WARMUP_ITERATIONS + MEASURED_ITERATIONS), messagesCount);
+        assertEquals(0, after - before);
+    }
+
+    @Test
+    public void lostLastPacketIsRequestedAfterTailTime() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final List<CommEvent> events = new ArrayList<>();
+        final CommDispatcher dispatcher = new CommDispatcher(collectingListener(events), scheduler);
+        final List<CommMessage> packets = createRoute().getMessages();
+        final int last = packets.size() - 1;
+
+        for (int i = 0; i < last; i++) {
+            receive(dispatcher, packets.get(i));
+        }
+        // the last packet may be still on the way
+        scheduler.advance(CommDispatcher.SIGNAL_DATA_TAIL_TIME - 1);
+        assertTrue(events.isEmpty());
+        scheduler.advance(1);
+        assertMissingPackets(events, last);
+
+        receive(dispatcher, packets.get(last));
+        assertCompleted(events);
+        scheduler.advance(CommDispatcher.SIGNAL_DATA_TAIL_TIME);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void packetLostAgainIsRequestedAgain() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final List<CommEvent> events = new ArrayList<>();
+        final CommDispatcher dispatcher = new CommDispatcher(collectingListener(events), scheduler);
+        final List<CommMessage> packets = createRoute().getMessages();
+        final int last = packets.size() - 1;
+
+        for (int i = 0; i < last; i++) {
+            if (i != 3) {
+                receive(dispatcher, packets.get(i));
+            }
+        }
+        // telemetry after the packets means sender is done, it does not break the transfer
+        receive(dispatcher, createDebugData().getMessage());
+        events.clear();
+        scheduler.advance(CommDispatcher.SIGNAL_DATA_QUIET_TIME);
+        assertMissingPackets(events, 3, last);
+
+        // retransmission round loses the last packet again
+        receive(dispatcher, packets.get(3));
+        scheduler.advance(CommDispatcher.SIGNAL_DATA_TAIL_TIME - 1);
+        assertTrue(events.isEmpty());
+        scheduler.advance(1);
+        assertMissingPackets(events, last);
+
+        receive(dispatcher, packets.get(last));
+        assertCompleted(events);
+    }
+
+    @Test
+    public void gapIsRequestedAfterQuietTime() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final List<CommEvent> events = new ArrayList<>();
+        final CommDispatcher dispatcher = new CommDispatcher(collectingListener(events), scheduler);
+        final List<CommMessage> packets = createRoute().getMessages();
+
+        // transfer stalls in the middle, only the gap is requested
+        for (int i = 0; i < 6; i++) {
+            if (i != 3) {
+                receive(dispatcher, packets.get(i));
+            }
+        }
+        scheduler.advance(CommDispatcher.SIGNAL_DATA_QUIET_TIME);
+        assertMissingPackets(events, 3);
+
+        // retransmitted packet is queued after the rest of transfer
+        for (int i = 6; i < packets.size(); i++) {
+            receive(dispatcher, packets.get(i));
+        }
+        assertTrue(events.isEmpty());
+        receive(dispatcher, packets.get(3));
+        assertCompleted(events);
+    }
+
+    private static CommDispatcher.CommDispatcherListener collectingListener(final List<CommEvent> events) {
+        return new CommDispatcher.CommDispatcherListener() {
+            @Override
+            public void handleCommEvent(CommEvent event) {
+                events.add(event);
+            }
+        };
+    }
+
+    private static void receive(CommDispatcher dispatcher, CommMessage message) {
+        final byte[] frame = message.getByteArray();
+        dispatcher.proceedReceiving(frame, frame.length);
+    }
+
+    private static void assertMissingPackets(List<CommEvent> events, int... packets) {
+        assertEquals(1, events.size());
+        final BitSet expected = new BitSet();
+        for (int packet : packets) {
+            expected.set(packet);
+        }
+        assertEquals(expected, ((SignalPayloadIncompleteEvent) events.get(0)).getMissingPackets());
+        events.clear();
+    }
+
+    private static void assertCompleted(List<CommEvent> events) {
+        assertEquals(1, events.size());
+        final RouteContainer route = (RouteContainer) ((SignalPayloadEvent) events.get(0)).getData();
+        assertTrue(route.isValid());
+        assertEquals(1000, route.getRouteSize());
+        events.clear();
+    }
+
+    private static RouteContainer createRoute() {
+        final RouteContainer route = new RouteContainer();
+        for (int i = 0; i < 1000; i++) {
+            route.addWaypoint(new RouteContainer.Waypoint(i, i, 1, 2, 3));
+        }
+        route.setCrc();
+        return route;
+    }
+
+    private static DebugData createDebugData() {
+        final DebugData debugData = new DebugData();
+        debugData.setLatitude(50.0f);
+        debugData.setControllerState(DebugData.ControllerState.MANUAL);
+        return debugData;
+    }
+}
@@ -0,0 +1,43 @@
+package com.skydive.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommOutboundQueueTest {
+
+    private static final long WRITE_DURATION = 2000000L; // [ns]
+
+    @Test
+    public void waitTimeIsMeasuredByScheduler() {
+        final VirtualScheduler scheduler = new VirtualScheduler(0);
+        final CommMessage message = new CommMessage(CommMessage.MessageType.CONTROL, new byte[16]);
+        final CommOutboundQueue[] queue = new CommOutboundQueue[1];
+        queue[0] = new CommOutboundQueue(new CommInterface() {
+            private int sentCount;
+
+            @Override
+            public void connect() {
+            }
+
+            @Override
+            public void disconnect() {
+            }
+
+            @Override
+            public void send(byte[] data, int dataSize) {
+                if (sentCount++ == 0) {
+                    // queued while the first message is written, waits for the writer
+                    queue[0].send(message, CommOutboundQueue.Priority.CONTROL);
+                }
+                scheduler.advance(WRITE_DURATION);
+            }
+        }, scheduler);
+
+        queue[0].send(message, CommOutboundQueue.Priority.CONTROL);
+
+        assertEquals(2, queue[0].getWrittenCount(CommOutboundQueue.Priority.CONTROL));
+        assertEquals(WRITE_DURATION / 1e6, queue[0].getMaxWaitTime(CommOutboundQueue.Priority.CONTROL), 0.0);
+        assertEquals(WRITE_DURATION / 2e6, queue[0].getAverageWaitTime(CommOutboundQueue.Priority.CONTROL), 0.0);
+    }
+}
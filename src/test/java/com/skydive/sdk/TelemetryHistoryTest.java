@@ -0,0 +1,147 @@
+package com.skydive.sdk;
+
+import com.skydive.sdk.data.DebugData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TelemetryHistoryTest {
+
+    private static final int CAPACITY = 8;
+    private static final long PERIOD = 10;
+
+    private TelemetryHistory history;
+    private final DebugData debugData = new DebugData();
+
+    @Before
+    public void setUp() {
+        history = new TelemetryHistory(CAPACITY);
+    }
+
+    /**
+     * Adds samples with timestamps i * PERIOD and roll i, for i in [first, end).
+     */
+    private void add(int first, int end) {
+        for (int i = first; i < end; i++) {
+            debugData.setRoll(i);
+            history.add(i * PERIOD, debugData);
+        }
+    }
+
+    @Test
+    public void oldestSamplesAreOverwritten() {
+        add(0, CAPACITY + 3);
+        assertEquals(CAPACITY, history.size());
+        assertEquals(3 * PERIOD, history.getOldestTimestamp());
+        assertEquals((CAPACITY + 2) * PERIOD, history.getNewestTimestamp());
+
+        final float[] values = new float[CAPACITY + 1];
+        final long[] timestamps = new long[CAPACITY + 1];
+        assertEquals(CAPACITY, history.getLast(TelemetryHistory.Field.ROLL, CAPACITY + 1, values, timestamps));
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(i + 3, values[i], 0.0f);
+            assertEquals((i + 3) * PERIOD, timestamps[i]);
+        }
+    }
+
+    @Test
+    public void getLastAcrossWrap() {
+        add(0, CAPACITY + 5);
+        final float[] values = new float[4];
+        assertEquals(4, history.getLast(TelemetryHistory.Field.ROLL, 4, values, null));
+        assertArrayEquals(new float[]{9, 10, 11, 12}, values, 0.0f);
+
+        // limited by length of array
+        final float[] small = new float[2];
+        assertEquals(2, history.getLast(TelemetryHistory.Field.ROLL, 4, small, null));
+        assertArrayEquals(new float[]{11, 12}, small, 0.0f);
+
+        history.clear();
+        assertEquals(0, history.getLast(TelemetryHistory.Field.ROLL, 4, values, null));
+        assertEquals(Long.MIN_VALUE, history.getOldestTimestamp());
+    }
+
+    @Test
+    public void rangeBoundaries() {
+        add(0, CAPACITY + 5);
+        final float[] values = new float[CAPACITY];
+        final long[] timestamps = new long[CAPACITY];
+
+        // from is inclusive, to is exclusive, boundaries fall on samples across wrap
+        assertEquals(3, history.getRange(TelemetryHistory.Field.ROLL, 6 * PERIOD, 9 * PERIOD, values, timestamps));
+        assertArrayEquals(new float[]{6, 7, 8}, Arrays.copyOf(values, 3), 0.0f);
+        assertEquals(6 * PERIOD, timestamps[0]);
+
+        // boundaries between samples
+        assertEquals(2, history.getRange(TelemetryHistory.Field.ROLL, 6 * PERIOD + 1, 8 * PERIOD + 1, values, null));
+        assertArrayEquals(new float[]{7, 8}, Arrays.copyOf(values, 2), 0.0f);
+
+        // range starting before the oldest and ending after the newest sample
+        assertEquals(CAPACITY, history.getRange(TelemetryHistory.Field.ROLL, 0, 100 * PERIOD, values, null));
+        assertEquals(5, values[0], 0.0f);
+        assertEquals(12, values[CAPACITY - 1], 0.0f);
+
+        // empty and reversed ranges
+        assertEquals(0, history.getRange(TelemetryHistory.Field.ROLL, 7 * PERIOD, 7 * PERIOD, values, null));
+        assertEquals(0, history.getRange(TelemetryHistory.Field.ROLL, 10 * PERIOD, 6 * PERIOD, values, null));
+        assertEquals(0, history.getRange(TelemetryHistory.Field.ROLL, 0, 5 * PERIOD, values, null));
+    }
+
+    @Test
+    public void statisticsOfRange() {
+        add(0, CAPACITY + 5);
+        final TelemetryHistory.Window window = history.getStatistics(TelemetryHistory.Field.ROLL, 6 * PERIOD, 10 * PERIOD);
+        assertEquals(4, window.getCount());
+        assertEquals(6, window.getMin(), 0.0f);
+        assertEquals(9, window.getMax(), 0.0f);
+        assertEquals(7.5f, window.getAverage(), 1e-6f);
+
+        assertNull(history.getStatistics(TelemetryHistory.Field.ROLL, 10 * PERIOD, 6 * PERIOD));
+        assertNull(history.getStatistics(TelemetryHistory.Field.ROLL, 13 * PERIOD, 20 * PERIOD));
+    }
+
+    @Test
+    public void windowsAreAlignedToStartOfRange() {
+        add(0, CAPACITY + 5);
+        // samples 5..12, windows of 3 periods from 4 * PERIOD: [4, 7), [7, 10), [10, 13)
+        final List<TelemetryHistory.Window> windows = history.getWindows(TelemetryHistory.Field.ROLL,
+                4 * PERIOD, 13 * PERIOD, 3 * PERIOD);
+        assertEquals(3, windows.size());
+        assertWindow(windows.get(0), 4 * PERIOD, 2, 5, 6);
+        assertWindow(windows.get(1), 7 * PERIOD, 3, 7, 9);
+        assertWindow(windows.get(2), 10 * PERIOD, 3, 10, 12);
+
+        // end of range cuts the last window
+        final List<TelemetryHistory.Window> cut = history.getWindows(TelemetryHistory.Field.ROLL,
+                4 * PERIOD, 11 * PERIOD, 3 * PERIOD);
+        assertEquals(3, cut.size());
+        assertWindow(cut.get(2), 10 * PERIOD, 1, 10, 10);
+
+        assertEquals(0, history.getWindows(TelemetryHistory.Field.ROLL, 11 * PERIOD, 4 * PERIOD, 3 * PERIOD).size());
+    }
+
+    @Test
+    public void windowsWithoutSamplesAreSkipped() {
+        add(0, 2);
+        add(6, 8);
+        final List<TelemetryHistory.Window> windows = history.getWindows(TelemetryHistory.Field.ROLL,
+                0, 8 * PERIOD, 2 * PERIOD);
+        assertEquals(2, windows.size());
+        assertWindow(windows.get(0), 0, 2, 0, 1);
+        assertWindow(windows.get(1), 6 * PERIOD, 2, 6, 7);
+    }
+
+    private static void assertWindow(TelemetryHistory.Window window, long start, int count, float min, float max) {
+        assertEquals(start, window.getStart());
+        assertEquals(count, window.getCount());
+        assertEquals(min, window.getMin(), 0.0f);
+        assertEquals(max, window.getMax(), 0.0f);
+    }
+}
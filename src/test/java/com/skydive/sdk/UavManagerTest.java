@@ -0,0 +1,74 @@
+package com.skydive.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class UavManagerTest {
+
+    private TimingWheelScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new TimingWheelScheduler("test_scheduler",
+                TimingWheelScheduler.DEFAULT_TICK_DURATION,
+                TimingWheelScheduler.DEFAULT_WHEEL_SIZE,
+                TimingWheelScheduler.DEFAULT_WORKERS_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void blockingListenersDoNotStopOtherListeners() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final int blockingCount = TimingWheelScheduler.DEFAULT_WORKERS_COUNT + 1;
+        final CountDownLatch blocked = new CountDownLatch(blockingCount);
+        final UavManager first = new UavManager(20, 1, scheduler);
+        final UavManager second = new UavManager(20, 1, scheduler);
+        for (int i = 0; i < blockingCount; i++) {
+            first.registerListener(new UavManager.UavManagerListener() {
+                @Override
+                public void handleUavEvent(UavEvent event, UavManager uavManager) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        final CountDownLatch firstReceived = new CountDownLatch(1);
+        first.registerListener(new UavManager.UavManagerListener() {
+            @Override
+            public void handleUavEvent(UavEvent event, UavManager uavManager) {
+                firstReceived.countDown();
+            }
+        });
+        final CountDownLatch secondReceived = new CountDownLatch(1);
+        second.registerListener(new UavManager.UavManagerListener() {
+            @Override
+            public void handleUavEvent(UavEvent event, UavManager uavManager) {
+                secondReceived.countDown();
+            }
+        });
+
+        try {
+            first.notifyUavEvent(new UavEvent(UavEvent.Type.MESSAGE, "first"));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            assertTrue(firstReceived.await(5, TimeUnit.SECONDS));
+            second.notifyUavEvent(new UavEvent(UavEvent.Type.MESSAGE, "second"));
+            assertTrue(secondReceived.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+}
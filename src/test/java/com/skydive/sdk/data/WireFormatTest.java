@@ -0,0 +1,181 @@
+package com.skydive.sdk.data;
+
+import com.skydive.sdk.CommMessage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Wire structures are encoded and decoded at fixed offsets, these bytes were produced by the former
+ * ByteBuffer based implementation and must not change.
+ */
+public class WireFormatTest {
+
+    private static final byte[] DEBUG = bytes(
+            "0000803e0000c0bf00004840773e484206819f410000484100c06743000000bf"
+            + "000088400000203f0000af42e8035a5700000000000000000000");
+
+    private static final byte[] CONTROL = bytes(
+            "0000003e000080be0000003f0000403f4c040200000000000000000000000000"
+            + "0000000000000000000000000000000000000000000000000000");
+
+    private static final byte[] AUTOPILOT = bytes(
+            "b9fc87f4db074940006f8104c5ef33400080664300007441d007000078563412");
+
+    private static final byte[] SIGNAL = bytes(
+            "b38601004b420f00");
+
+    private static final byte[] CONTROL_SETTINGS = bytes(
+            "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02270c31163b20052a0f34193e23082d12371c0126"
+            + "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02270c31163b20052a0f34193e23082d12371c0126"
+            + "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02");
+
+    private static final byte[] CALIBRATION_SETTINGS = bytes(
+            "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02270c31163b20052a0f34193e23082d12371c0126"
+            + "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02270c31163b20052a0f34193e23082d12371c0126"
+            + "0b30153a1f04290e33183d22072c11361b00250a2f14391e03280d32173c2106"
+            + "2b10351a3f24092e13381d02270c31163b20052a0f34193e23082d12");
+
+    @Test
+    public void debugData() {
+        final DebugData debugData = new DebugData();
+        debugData.setRoll(0.25f);
+        debugData.setPitch(-1.5f);
+        debugData.setYaw(3.125f);
+        debugData.setLatitude(50.061f);
+        debugData.setLongitude(19.938f);
+        debugData.setRelativeAltitude(12.5f);
+        debugData.setAbsoluteAltitude(231.75f);
+        debugData.setVerticalVelocity(-0.5f);
+        debugData.setVelocity(4.25f);
+        debugData.setUsedThrottle(0.625f);
+        debugData.setDistanceToBase(87.5f);
+        debugData.setControllerState(DebugData.ControllerState.MANUAL);
+        debugData.setFlags((byte) 0x5a);
+        debugData.setBattery((byte) 87);
+        assertArrayEquals(DEBUG, debugData.getMessage().getPayload());
+        assertEncodedAtOffset(DEBUG, DebugData.Layout.SIZE, debugData);
+
+        final DebugData decoded = new DebugData(new CommMessage(CommMessage.MessageType.CONTROL, DEBUG));
+        assertEquals(0.25f, decoded.getRoll(), 0.0f);
+        assertEquals(-1.5f, decoded.getPitch(), 0.0f);
+        assertEquals(3.125f, decoded.getYaw(), 0.0f);
+        assertEquals(50.061f, decoded.getLatitude(), 0.0f);
+        assertEquals(19.938f, decoded.getLongitude(), 0.0f);
+        assertEquals(12.5f, decoded.getRelativeAltitude(), 0.0f);
+        assertEquals(231.75f, decoded.getAbsoluteAltitude(), 0.0f);
+        assertEquals(-0.5f, decoded.getVerticalVelocity(), 0.0f);
+        assertEquals(4.25f, decoded.getVelocity(), 0.0f);
+        assertEquals(0.625f, decoded.getUsedThrottle(), 0.0f);
+        assertEquals(87.5f, decoded.getDistanceToBase(), 0.0f);
+        assertEquals(DebugData.ControllerState.MANUAL, decoded.getControllerState());
+        assertEquals((byte) 0x5a, decoded.getFlags());
+        assertEquals((byte) 87, decoded.getBattery());
+
+        final DebugDataView view = new DebugDataView().wrap(DEBUG, 0);
+        assertEquals(50.061f, view.getLatitude(), 0.0f);
+        assertEquals(DebugData.ControllerState.MANUAL.getValue(), view.getControllerStateValue());
+        assertFields(DebugData.Layout.FIELDS, DebugData.Layout.SIZE);
+    }
+
+    @Test
+    public void controlData() {
+        final ControlData controlData = new ControlData();
+        controlData.setRoll(0.125f);
+        controlData.setPitch(-0.25f);
+        controlData.setYaw(0.5f);
+        controlData.setThrottle(0.75f);
+        controlData.setCommand(ControlData.ControllerCommand.AUTOLANDING);
+        controlData.setMode(ControlData.SolverMode.ANGLE);
+        assertArrayEquals(CONTROL, controlData.serialize());
+
+        final ControlData decoded = new ControlData(CONTROL);
+        assertEquals(0.125f, decoded.getRoll(), 0.0f);
+        assertEquals(-0.25f, decoded.getPitch(), 0.0f);
+        assertEquals(0.5f, decoded.getYaw(), 0.0f);
+        assertEquals(0.75f, decoded.getThrottle(), 0.0f);
+        assertEquals(ControlData.ControllerCommand.AUTOLANDING, decoded.getCommand());
+        assertEquals(ControlData.SolverMode.ANGLE, decoded.getMode());
+        assertFields(ControlData.Layout.FIELDS, ControlData.Layout.SIZE);
+    }
+
+    @Test
+    public void autopilotData() {
+        final AutopilotData autopilotData = new AutopilotData();
+        autopilotData.setLatitude(50.0614);
+        autopilotData.setLongitude(19.9366);
+        autopilotData.setAbsoluteAltitude(230.5f);
+        autopilotData.setRelativeAltitude(15.25f);
+        autopilotData.setType(AutopilotData.Type.BASE);
+        autopilotData.setFlags(0x12345678);
+        assertArrayEquals(AUTOPILOT, autopilotData.getMessage().getPayload());
+
+        final AutopilotData decoded = new AutopilotData(new CommMessage(CommMessage.MessageType.AUTOPILOT, AUTOPILOT));
+        assertEquals(50.0614, decoded.getLatitude(), 0.0);
+        assertEquals(19.9366, decoded.getLongitude(), 0.0);
+        assertEquals(230.5f, decoded.getAbsoluteAltitude(), 0.0f);
+        assertEquals(15.25f, decoded.getRelativeAltitude(), 0.0f);
+        assertEquals(AutopilotData.Type.BASE, decoded.getType());
+        assertEquals(0x12345678, decoded.getFlags());
+        assertFields(AutopilotData.Layout.FIELDS, AutopilotData.Layout.SIZE);
+    }
+
+    @Test
+    public void signalData() {
+        final SignalData signalData = new SignalData(SignalData.Command.UPLOAD_ROUTE, SignalData.Parameter.START);
+        assertArrayEquals(SIGNAL, signalData.getMessage().getPayload());
+
+        final SignalData decoded = new SignalData(new CommMessage(CommMessage.MessageType.SIGNAL, SIGNAL));
+        assertEquals(SignalData.Command.UPLOAD_ROUTE, decoded.getCommand());
+        assertEquals(SignalData.Parameter.START, decoded.getParameter());
+    }
+
+    @Test
+    public void controlSettings() {
+        assertArrayEquals(CONTROL_SETTINGS, new ControlSettings(CONTROL_SETTINGS).serialize());
+    }
+
+    @Test
+    public void calibrationSettings() {
+        assertArrayEquals(CALIBRATION_SETTINGS, new CalibrationSettings(CALIBRATION_SETTINGS).serialize());
+    }
+
+    private static void assertEncodedAtOffset(byte[] expected, int size, DebugData debugData) {
+        final int offset = 3;
+        final byte[] dst = new byte[offset + size + 1];
+        debugData.encode(dst, offset);
+        assertArrayEquals(Arrays.copyOf(expected, size), Arrays.copyOfRange(dst, offset, offset + size));
+        assertEquals(0, dst[0]);
+        assertEquals(0, dst[dst.length - 1]);
+    }
+
+    /**
+     * Fields of layout have to cover the whole structure, in order and without gaps.
+     */
+    private static void assertFields(List<WireFormat.Field> fields, int size) {
+        int offset = 0;
+        for (WireFormat.Field field : fields) {
+            assertEquals(field.getName(), offset, field.getOffset());
+            offset += field.getType().getSize();
+        }
+        assertEquals(size, offset);
+    }
+
+    private static byte[] bytes(String hex) {
+        final byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package com.skydive.sdk.interfaces;
+
+import com.skydive.sdk.CommInterface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommHubTest {
+
+    private static final int DATA_SIZE = 1000;
+
+    private CommHub hub;
+
+    @Before
+    public void setUp() throws IOException {
+        hub = new CommHub(1);
+    }
+
+    @After
+    public void tearDown() {
+        hub.close();
+    }
+
+    @Test(timeout = 30000)
+    public void statisticsKeepTrafficOfClosedLinks() throws Exception {
+        final TcpCommInterface server = new TcpCommInterface(0, hub);
+        final Receiver serverReceiver = new Receiver();
+        server.setListener(serverReceiver);
+        server.connect();
+
+        final LinkStatistics start = hub.getStatistics();
+        exchange(server, serverReceiver);
+        final LinkStatistics beforeClose = hub.getStatistics();
+        assertTrue(beforeClose.getBytesSent() >= start.getBytesSent() + 2 * DATA_SIZE);
+        assertTrue(beforeClose.getBytesReceived() >= start.getBytesReceived() + 2 * DATA_SIZE);
+
+        // the second session of the same server interface
+        exchange(server, serverReceiver);
+        final LinkStatistics afterClose = hub.getStatistics();
+        assertTrue(afterClose.getBytesSent() >= beforeClose.getBytesSent() + 2 * DATA_SIZE);
+        assertTrue(afterClose.getBytesReceived() >= beforeClose.getBytesReceived() + 2 * DATA_SIZE);
+        assertTrue(afterClose.getReceiveRate(beforeClose) > 0);
+        assertTrue(afterClose.getSendRate(beforeClose) > 0);
+
+        server.close();
+        final LinkStatistics closed = hub.getStatistics();
+        assertEquals(0, hub.getLinksCount());
+        assertEquals(afterClose.getBytesSent(), closed.getBytesSent());
+        assertEquals(afterClose.getBytesReceived(), closed.getBytesReceived());
+        assertTrue(closed.getReceiveRate(afterClose) >= 0);
+    }
+
+    /**
+     * Connects client to server, sends data in both directions and closes client.
+     */
+    private void exchange(TcpCommInterface server, Receiver serverReceiver) throws Exception {
+        final TcpCommInterface client = new TcpCommInterface("127.0.0.1", server.getLocalPort(), hub);
+        final Receiver clientReceiver = new Receiver();
+        client.setListener(clientReceiver);
+        client.connect();
+        assertTrue(clientReceiver.connected.await(10, TimeUnit.SECONDS));
+
+        final long serverReceived = serverReceiver.bytesReceived.get();
+        client.send(new byte[DATA_SIZE], DATA_SIZE);
+        serverReceiver.await(serverReceived + DATA_SIZE);
+        server.send(new byte[DATA_SIZE], DATA_SIZE);
+        clientReceiver.await(DATA_SIZE);
+        client.close();
+    }
+
+    private static class Receiver implements CommInterface.CommInterfaceListener {
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        @Override
+        public void onConnected() {
+            connected.countDown();
+        }
+
+        @Override
+        public void onDisconnected() {
+        }
+
+        @Override
+        public void onError(IOException e) {
+        }
+
+        @Override
+        public void onDataReceived(byte[] data, int dataSize) {
+            synchronized (this) {
+                bytesReceived.addAndGet(dataSize);
+                notifyAll();
+            }
+        }
+
+        synchronized void await(long bytes) throws InterruptedException {
+            while (bytesReceived.get() < bytes) {
+                wait(100);
+            }
+        }
+    }
+}
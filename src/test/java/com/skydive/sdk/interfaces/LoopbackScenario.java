@@ -0,0 +1,95 @@
+package com.skydive.sdk.interfaces;
+
+import com.skydive.sdk.CommInterface;
+import com.skydive.sdk.UavEvent;
+import com.skydive.sdk.UavManager;
+import com.skydive.sdk.UavSimulator;
+import com.skydive.sdk.actions.CommHandlerAction;
+import com.skydive.sdk.data.ControlData;
+import com.skydive.sdk.data.RouteContainer;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives UavManager connected through ground interface against UavSimulator listening on board
+ * interface: connect, route upload, flight loop start and end, disconnect.
+ */
+class LoopbackScenario {
+
+    private static final long TIMEOUT = 20000000000L; // [ns]
+
+    private final BlockingQueue<UavEvent> events = new LinkedBlockingQueue<>();
+    private final UavManager uavManager;
+
+    LoopbackScenario(CommInterface boardInterface) {
+        final UavSimulator simulator = new UavSimulator(boardInterface);
+        boardInterface.setListener(simulator);
+        boardInterface.connect();
+
+        uavManager = new UavManager(20, 1);
+        uavManager.setControlDataSource(new UavManager.ControlDataSource() {
+            @Override
+            public ControlData getControlData() {
+                return new ControlData();
+            }
+        });
+        uavManager.registerListener(new UavManager.UavManagerListener() {
+            @Override
+            public void handleUavEvent(UavEvent event, UavManager uavManager) {
+                if (event.getType() != UavEvent.Type.DEBUG_UPDATED) {
+                    events.add(event);
+                }
+            }
+        });
+    }
+
+    void run(CommInterface groundInterface, int waypointsCount) throws Exception {
+        uavManager.connect(groundInterface);
+        awaitEvent(UavEvent.Type.CONNECTED);
+
+        final RouteContainer routeContainer = new RouteContainer();
+        for (int i = 0; i < waypointsCount; i++) {
+            routeContainer.addWaypoint(new RouteContainer.Waypoint(i, i, 1, 2, 3));
+        }
+        routeContainer.setCrc();
+        uavManager.uploadRouteContainer(routeContainer);
+        awaitEvent(UavEvent.Type.ROUTE_UPLOADED);
+
+        awaitApplicationLoop();
+        uavManager.startFlightLoop();
+        awaitEvent(UavEvent.Type.FLIGHT_STARTED);
+        uavManager.endFlightLoop();
+        awaitEvent(UavEvent.Type.FLIGHT_ENDED);
+
+        awaitApplicationLoop();
+        uavManager.disconnectApplicationLoop();
+        awaitEvent(UavEvent.Type.DISCONNECTED);
+    }
+
+    private void awaitEvent(UavEvent.Type type) throws InterruptedException {
+        final long deadline = System.nanoTime() + TIMEOUT;
+        UavEvent event;
+        do {
+            event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            assertNotNull("Timeout waiting for " + type, event);
+            if (type != UavEvent.Type.DISCONNECTED) {
+                assertTrue("Unexpected " + event.getType() + " waiting for " + type,
+                        event.getType() != UavEvent.Type.ERROR && event.getType() != UavEvent.Type.DISCONNECTED);
+            }
+        } while (event.getType() != type);
+    }
+
+    // events are notified before action is done, commands are ignored until application loop is back
+    private void awaitApplicationLoop() throws InterruptedException {
+        final long deadline = System.nanoTime() + TIMEOUT;
+        while (uavManager.getCommHandler().getCommActionType() != CommHandlerAction.ActionType.APPLICATION_LOOP) {
+            assertTrue("Timeout waiting for application loop", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
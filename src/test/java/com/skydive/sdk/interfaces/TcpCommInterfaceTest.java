@@ -0,0 +1,23 @@
+package com.skydive.sdk.interfaces;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TcpCommInterfaceTest {
+
+    private TcpCommInterface boardInterface;
+
+    @After
+    public void tearDown() {
+        if (boardInterface != null) {
+            boardInterface.close();
+        }
+    }
+
+    @Test(timeout = 120000)
+    public void loopbackSession() throws Exception {
+        boardInterface = new TcpCommInterface(0);
+        final LoopbackScenario scenario = new LoopbackScenario(boardInterface);
+        scenario.run(new TcpCommInterface("127.0.0.1", boardInterface.getLocalPort()), 1000);
+    }
+}
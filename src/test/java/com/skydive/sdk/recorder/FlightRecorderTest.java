@@ -0,0 +1,169 @@
+package com.skydive.sdk.recorder;
+
+import com.skydive.sdk.VirtualScheduler;
+import com.skydive.sdk.data.DebugData;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderTest {
+
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final int FRAMES_COUNT = 30000;
+    private static final long INTERVAL = 1000000L; // [ns]
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordingIsReadAcrossSegments() throws Exception {
+        final File directory = folder.getRoot();
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final FlightRecorder recorder = new FlightRecorder(directory, "flight", SEGMENT_SIZE, scheduler, DIRECT_EXECUTOR);
+        final long[] timestamps = new long[FRAMES_COUNT];
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            final byte[] frame = debugFrame(i);
+            scheduler.advance(INTERVAL);
+            timestamps[i] = scheduler.nanoTime();
+            recorder.record(i % 10 == 0 ? FlightRecorder.Direction.OUTBOUND : FlightRecorder.Direction.INBOUND,
+                    frame, 0, frame.length);
+        }
+        recorder.close();
+        assertEquals(FRAMES_COUNT, recorder.getRecordsCount());
+        assertEquals(0, recorder.getDroppedCount());
+        assertTrue(recorder.getSegmentsCount() > 5);
+
+        final FlightRecordReader reader = new FlightRecordReader(directory, "flight");
+        assertEquals(recorder.getSegmentsCount(), reader.getSegmentsCount());
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            assertTrue(reader.next());
+            assertEquals(timestamps[i], reader.getTimestamp());
+            assertEquals(i % 10 == 0 ? FlightRecorder.Direction.OUTBOUND : FlightRecorder.Direction.INBOUND,
+                    reader.getDirection());
+            final byte[] data = new byte[reader.getData().remaining()];
+            reader.getData().get(data);
+            assertArrayEquals(debugFrame(i), data);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void seekFindsRecordByTimestamp() throws Exception {
+        final File directory = folder.getRoot();
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final FlightRecorder recorder = new FlightRecorder(directory, "flight", SEGMENT_SIZE, scheduler, DIRECT_EXECUTOR);
+        final long startTime = scheduler.nanoTime();
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            final byte[] frame = debugFrame(i);
+            scheduler.advance(INTERVAL);
+            recorder.record(FlightRecorder.Direction.INBOUND, frame, 0, frame.length);
+        }
+        recorder.close();
+
+        final FlightRecordReader reader = new FlightRecordReader(directory, "flight");
+        final int[] targets = {0, 1, 2999, 3000, 12345, FRAMES_COUNT - 1};
+        for (int target : targets) {
+            final long timestamp = startTime + (target + 1) * INTERVAL;
+            reader.seek(timestamp);
+            assertTrue(reader.next());
+            assertEquals(timestamp, reader.getTimestamp());
+            // between records, seek moves to the next one
+            reader.seek(timestamp - INTERVAL / 2);
+            assertTrue(reader.next());
+            assertEquals(timestamp, reader.getTimestamp());
+        }
+        reader.seek(startTime + (FRAMES_COUNT + 1) * INTERVAL);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void recordingIsDecoded() throws Exception {
+        final File directory = folder.newFolder("recording");
+        final File output = folder.newFolder("decoded");
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final FlightRecorder recorder = new FlightRecorder(directory, "flight", SEGMENT_SIZE, scheduler, DIRECT_EXECUTOR);
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            final byte[] frame = debugFrame(i);
+            scheduler.advance(INTERVAL);
+            // split some frames between chunks
+            final int split = i % 7 == 0 ? frame.length / 2 : frame.length;
+            recorder.record(FlightRecorder.Direction.INBOUND, frame, 0, split);
+            recorder.record(FlightRecorder.Direction.INBOUND, frame, split, frame.length - split);
+        }
+        recorder.close();
+
+        final CaptureDecoder.Result result = new CaptureDecoder(ForkJoinPool.commonPool(), 64 * 1024)
+                .decode(directory, "flight", output);
+        assertEquals(FRAMES_COUNT, result.getDebugCount());
+        assertEquals(0, result.getCrcErrorsCount());
+        assertTrue(result.getPartsCount() > 1);
+
+        final ByteBuffer latitudes = ByteBuffer.wrap(Files.readAllBytes(new File(output, "debug/latitude.f32").toPath()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(FRAMES_COUNT * 4, latitudes.remaining());
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            assertEquals((float) i, latitudes.getFloat(), 0.0f);
+        }
+    }
+
+    @Test
+    public void chunksAreDroppedUntilNextSegmentIsPrepared() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final FlightRecorder recorder = new FlightRecorder(folder.getRoot(), "flight", SEGMENT_SIZE, scheduler, executor);
+        final byte[] frame = debugFrame(0);
+        final int fittingCount = (SEGMENT_SIZE - FlightRecorder.HEADER_SIZE) / (FlightRecorder.RECORD_HEADER_SIZE + frame.length);
+        for (int i = 0; i < fittingCount + 100; i++) {
+            recorder.record(FlightRecorder.Direction.INBOUND, frame, 0, frame.length);
+        }
+        assertEquals(1, recorder.getSegmentsCount());
+        assertTrue(recorder.getNotReadyDroppedCount() > 0);
+        assertEquals(recorder.getNotReadyDroppedCount(), recorder.getDroppedCount());
+
+        // prepare next segment
+        for (Runnable task : new ArrayList<>(tasks)) {
+            task.run();
+        }
+        final long recordsCount = recorder.getRecordsCount();
+        recorder.record(FlightRecorder.Direction.INBOUND, frame, 0, frame.length);
+        assertEquals(2, recorder.getSegmentsCount());
+        assertEquals(recordsCount + 1, recorder.getRecordsCount());
+        recorder.close();
+    }
+
+    private static byte[] debugFrame(int i) {
+        final DebugData debugData = new DebugData();
+        debugData.setLatitude(i);
+        debugData.setLongitude(-i);
+        debugData.setControllerState(DebugData.ControllerState.MANUAL);
+        return debugData.getMessage().getByteArray();
+    }
+}